@@ -6,136 +6,187 @@ import cn.paper_card.chinese_name.api.NameInfo;
 import cn.paper_card.chinese_name.api.exception.InvalidNameException;
 import cn.paper_card.chinese_name.api.exception.NameAppliedException;
 import cn.paper_card.chinese_name.api.exception.NameRegisteredException;
-import cn.paper_card.database.api.DatabaseApi;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class ApplicationServiceImpl implements ApplicationService {
 
-    interface NameChecker {
-        @Nullable NameInfo queryByName(@NotNull String name) throws SQLException;
+    // 分页游标，申请按 (time, id) 排序
+    public record Cursor(long time, int id) {
+        public static @NotNull Cursor of(@NotNull ApplicationInfo info) {
+            return new Cursor(info.time(), info.id());
+        }
     }
 
 
-    private final @NotNull DatabaseApi.MySqlConnection mySqlConnection;
-
-    private Connection connection = null;
-    private ApplicationTable table = null;
-
-    private final @NotNull NameChecker nameChecker;
+    private final @NotNull SessionSource source;
 
-    private final @NotNull Pattern compile;
+    private final @NotNull StripedLocks locks;
 
+    private final @NotNull AsyncExecutor asyncExecutor;
 
-    ApplicationServiceImpl(@NotNull DatabaseApi.MySqlConnection mySqlConnection, @NotNull NameChecker nameChecker) {
-        this.mySqlConnection = mySqlConnection;
-        this.nameChecker = nameChecker;
+    private final @NotNull ServiceMetrics metrics;
 
-        this.compile = Pattern.compile("[\\u4e00-\\u9fa5]{2,4}");
-    }
+    // 表结构迁移完成后 (uid1, uid2) 才是唯一键
+    private volatile boolean uniqueKeysReady = false;
 
-    private @NotNull ApplicationTable getTable() throws SQLException {
-        final Connection newCon = this.mySqlConnection.getRawConnection();
+    private volatile @NotNull NameValidator nameValidator = NameValidator.DEFAULT;
 
-        if (this.connection != null && this.connection == newCon) return this.table;
+    // 未处理的申请数量，小于0表示还没有从数据库加载
+    private final @NotNull AtomicInteger pendingCount = new AtomicInteger(-1);
 
-        if (this.table != null) this.table.close();
-        this.table = new ApplicationTable(newCon);
-        this.connection = newCon;
-        return this.table;
+    ApplicationServiceImpl(@NotNull SessionSource source, @NotNull StripedLocks locks, @NotNull AsyncExecutor asyncExecutor,
+                           @NotNull ServiceMetrics metrics) {
+        this.source = source;
+        this.locks = locks;
+        this.asyncExecutor = asyncExecutor;
+        this.metrics = metrics;
     }
 
-    void destroy() throws SQLException {
-        synchronized (this.mySqlConnection) {
-            final ApplicationTable t = this.table;
-
-            if (t == null) {
-                this.connection = null;
-                return;
-            }
+    void setUniqueKeysReady(boolean ready) {
+        this.uniqueKeysReady = ready;
+    }
 
-            this.connection = null;
-            this.table = null;
+    @NotNull NameValidator getNameValidator() {
+        return this.nameValidator;
+    }
 
-            t.close();
-        }
+    void setNameValidator(@NotNull NameValidator nameValidator) {
+        this.nameValidator = nameValidator;
     }
 
     @Override
     public void checkNameValid(@NotNull String name) throws InvalidNameException {
-        final Matcher matcher = this.compile.matcher(name);
-        if (!matcher.matches())
-            throw new InvalidNameException("不正确的中文名：%s，字数只能为2~4个字，只能为汉字".formatted(name));
+        final NameValidator v = this.nameValidator;
+        if (!v.isValid(name))
+            throw new InvalidNameException("不正确的中文名：%s，字数只能为%d~%d个字，只能为汉字".formatted(
+                    name, v.getMinLength(), v.getMaxLength()));
     }
 
     public int addWithCheck(@NotNull ApplicationInfo info) throws SQLException, NameRegisteredException, NameAppliedException, AlreadyApplyException, InvalidNameException {
+        final ServiceMetrics.Call call = this.metrics.begin(ServiceMetrics.Operation.APP_ADD, info.uuid());
+        try {
+            return this.doAddWithCheck(info);
+        } catch (Throwable e) {
+            call.fail(e);
+            throw e;
+        } finally {
+            call.end();
+        }
+    }
+
+    private int doAddWithCheck(@NotNull ApplicationInfo info) throws SQLException, NameRegisteredException, NameAppliedException, AlreadyApplyException, InvalidNameException {
         this.checkNameValid(info.name());
         return this.addNoCheck(info);
     }
 
     public int addNoCheck(@NotNull ApplicationInfo info) throws NameRegisteredException, NameAppliedException, SQLException, AlreadyApplyException {
-        synchronized (this.mySqlConnection) {
-            try {
-                final ApplicationTable t = this.getTable();
-
-                // 检查是否已经申请
-                final ApplicationInfo info2 = t.queryByUuid(info.uuid());
-                if (info2 != null) {
-                    throw new AlreadyApplyException(info2, "你已经申请了中文名：%s，不可重复申请！".formatted(info2.name()));
-                }
-
-                // 查询是否已经被注册
-                final NameInfo nameInfo = this.nameChecker.queryByName(info.name());
-                this.mySqlConnection.setLastUseTime();
+        final ServiceMetrics.Call call = this.metrics.begin(ServiceMetrics.Operation.APP_ADD, info.uuid());
+        try {
+            return this.doAddNoCheck(info);
+        } catch (Throwable e) {
+            call.fail(e);
+            throw e;
+        } finally {
+            call.end();
+        }
+    }
 
-                if (nameInfo != null)
-                    throw new NameRegisteredException(nameInfo, "中文名 %s 已经被注册！".formatted(info.name()));
+    private int doAddNoCheck(@NotNull ApplicationInfo info) throws NameRegisteredException, NameAppliedException, SQLException, AlreadyApplyException {
+        // 同一个玩家、同一个名字的申请和注册互斥，多个服务器之间由数据库的唯一约束保证
+        try (final StripedLocks.Held ignored = this.locks.lock(info.uuid(), info.name())) {
 
-                // 查询是否已经被申请
-                final ApplicationInfo info1 = t.queryByName(info.name());
-                this.mySqlConnection.setLastUseTime();
+            // 冲突的记录可能在查询前被删除，这时重试一次
+            for (int i = 0; ; ++i) {
+                final int id = this.insert(info);
 
-                if (info1 != null)
-                    throw new NameAppliedException(info1, "中文名 %s 已经被申请！".formatted(info1.name()));
+                if (id < 0) {
+                    this.throwIfApplied(info);
+                    if (i > 0) throw new SQLException("申请写入冲突，请重试");
+                    continue;
+                }
 
+                if (id == 0) {
+                    // 不经过过滤器，名字可能是其它服务器注册的
+                    final NameInfo nameInfo = this.source.execute(s -> s.getNameTable().queryByName(info.name()));
+                    if (nameInfo != null)
+                        throw new NameRegisteredException(nameInfo, "中文名 %s 已经被注册！".formatted(info.name()));
+                    if (i > 0) throw new SQLException("申请写入冲突，请重试");
+                    continue;
+                }
 
-                // 插入
-                final int id = t.insert(info);
-                this.mySqlConnection.setLastUseTime();
+                this.pendingCount.updateAndGet(c -> c < 0 ? c : c + 1);
                 return id;
-            } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
-                }
-                throw e;
             }
         }
     }
 
-    public @Nullable ApplicationInfo takeByUuid(@NotNull UUID uuid) throws SQLException {
-        synchronized (this.mySqlConnection) {
+    // 返回申请的ID，0表示名字已经被注册，-1表示和已有的申请冲突
+    private int insert(@NotNull ApplicationInfo info) throws SQLException {
+        return this.source.execute(s -> {
+            final ApplicationTable t = s.getApplicationTable();
+            final Dialect dialect = s.getDialect();
+
             try {
-                final ApplicationTable t = this.getTable();
-                final ApplicationInfo info = t.queryByUuid(uuid);
-                this.mySqlConnection.setLastUseTime();
-                if (info != null) t.deleteById(info.id());
-                return info;
+                if (this.uniqueKeysReady) return t.insertIfNameFree(info, dialect);
+
+                return s.transaction(x -> {
+                    if (t.queryByUuid(info.uuid()) != null) return -1;
+                    return t.insertIfNameFree(info, dialect);
+                });
             } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
-                }
+                // 和其它申请的UUID或者名字冲突
+                if (dialect.isConstraintViolation(e)) return -1;
                 throw e;
             }
-        }
+        });
+    }
+
+    // 违反唯一约束后，查询是和哪一条申请冲突
+    private void throwIfApplied(@NotNull ApplicationInfo info) throws SQLException, AlreadyApplyException, NameAppliedException {
+        final ApplicationInfo[] conflict = new ApplicationInfo[2];
+        this.source.execute(s -> {
+            final ApplicationTable t = s.getApplicationTable();
+            conflict[0] = t.queryByUuid(info.uuid());
+            if (conflict[0] == null) conflict[1] = t.queryByName(info.name());
+            return null;
+        });
+
+        final ApplicationInfo info2 = conflict[0];
+        if (info2 != null)
+            throw new AlreadyApplyException(info2, "你已经申请了中文名：%s，不可重复申请！".formatted(info2.name()));
+
+        final ApplicationInfo info1 = conflict[1];
+        if (info1 != null)
+            throw new NameAppliedException(info1, "中文名 %s 已经被申请！".formatted(info1.name()));
+    }
+
+    private void onTaken(@Nullable ApplicationInfo info) {
+        if (info != null) this.pendingCount.updateAndGet(c -> c <= 0 ? c : c - 1);
+    }
+
+    public @Nullable ApplicationInfo takeByUuid(@NotNull UUID uuid) throws SQLException {
+        return this.metrics.time(ServiceMetrics.Operation.APP_TAKE_BY_UUID, uuid, () -> this.doTakeByUuid(uuid));
+    }
+
+    private @Nullable ApplicationInfo doTakeByUuid(@NotNull UUID uuid) throws SQLException {
+        final ApplicationInfo taken = this.source.execute(s -> {
+            final ApplicationTable t = s.getApplicationTable();
+            final ApplicationInfo info = t.queryByUuid(uuid);
+            if (info == null) return null;
+
+            // 可能已经被其它线程取走
+            final int deleted = t.deleteById(info.id());
+            return deleted == 1 ? info : null;
+        });
+        this.onTaken(taken);
+        return taken;
     }
 
     @Override
@@ -145,90 +196,123 @@ class ApplicationServiceImpl implements ApplicationService {
 
     @Override
     public @Nullable ApplicationInfo queryByName(@NotNull String name) throws SQLException {
-        synchronized (this.mySqlConnection) {
-
-            try {
-                final ApplicationTable t = this.getTable();
-
-                final ApplicationInfo info = t.queryByName(name);
-                this.mySqlConnection.setLastUseTime();
+        return this.metrics.time(ServiceMetrics.Operation.APP_QUERY_BY_NAME, () -> this.doQueryByName(name));
+    }
 
-                return info;
-            } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
-                }
-                throw e;
-            }
-        }
+    private @Nullable ApplicationInfo doQueryByName(@NotNull String name) throws SQLException {
+        return this.source.execute(s -> s.getApplicationTable().queryByName(name));
     }
 
     @Override
     public @NotNull List<ApplicationInfo> queryWithPage(int limit, int offset) throws SQLException {
-        synchronized (this.mySqlConnection) {
-            try {
-                final List<ApplicationInfo> list;
+        return this.metrics.time(ServiceMetrics.Operation.APP_QUERY_WITH_PAGE, () -> this.doQueryWithPage(limit, offset));
+    }
 
-                final ApplicationTable t = this.getTable();
+    private @NotNull List<ApplicationInfo> doQueryWithPage(int limit, int offset) throws SQLException {
+        return this.source.execute(s -> s.getApplicationTable().queryWithPage(limit, offset));
+    }
 
-                list = t.queryWithPage(limit, offset);
-                this.mySqlConnection.setLastUseTime();
+    // cursor为null时查询第一页
+    public @NotNull List<ApplicationInfo> queryAfter(@Nullable Cursor cursor, int limit) throws SQLException {
+        return this.metrics.time(ServiceMetrics.Operation.APP_QUERY_AFTER, () -> this.doQueryAfter(cursor, limit));
+    }
 
-                return list;
-            } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
-                }
+    private @NotNull List<ApplicationInfo> doQueryAfter(@Nullable Cursor cursor, int limit) throws SQLException {
+        final long time = cursor != null ? cursor.time() : Long.MIN_VALUE;
+        final int id = cursor != null ? cursor.id() : Integer.MIN_VALUE;
+        return this.source.execute(s -> s.getApplicationTable().queryAfter(time, id, limit));
+    }
 
-                throw e;
-            }
-        }
+    public @NotNull List<ApplicationInfo> queryBefore(@NotNull Cursor cursor, int limit) throws SQLException {
+        return this.metrics.time(ServiceMetrics.Operation.APP_QUERY_BEFORE, () -> this.doQueryBefore(cursor, limit));
+    }
+
+    private @NotNull List<ApplicationInfo> doQueryBefore(@NotNull Cursor cursor, int limit) throws SQLException {
+        return this.source.execute(s -> s.getApplicationTable().queryBefore(cursor.time(), cursor.id(), limit));
     }
 
     int queryCount() throws SQLException {
-        synchronized (this.mySqlConnection) {
-            try {
-                final ApplicationTable t = this.getTable();
-                final int c = t.queryCount();
-                this.mySqlConnection.setLastUseTime();
-                return c;
-            } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
-                }
-                throw e;
-            }
-        }
+        return this.metrics.time(ServiceMetrics.Operation.APP_QUERY_COUNT, () -> this.doQueryCount());
+    }
+
+    private int doQueryCount() throws SQLException {
+        return this.source.execute(s -> s.getApplicationTable().queryCount());
+    }
+
+    // 未处理的申请数量，通常不需要访问数据库
+    public int getPendingCount() throws SQLException {
+        final int c = this.pendingCount.get();
+        if (c >= 0) return c;
+        return this.reconcilePendingCount();
+    }
+
+    // 以数据库为准校正计数，其它服务器的申请也会被统计进来，应该定期调用
+    int reconcilePendingCount() throws SQLException {
+        final int c = this.queryCount();
+        this.pendingCount.set(c);
+        return c;
     }
 
     @Override
     public @Nullable ApplicationInfo takeById(int id) throws SQLException {
-        synchronized (this.mySqlConnection) {
+        return this.metrics.time(ServiceMetrics.Operation.APP_TAKE_BY_ID, () -> this.doTakeById(id));
+    }
 
-            try {
-                final ApplicationTable t = this.getTable();
+    private @Nullable ApplicationInfo doTakeById(int id) throws SQLException {
+        final ApplicationInfo taken = this.source.execute(s -> {
+            final ApplicationTable t = s.getApplicationTable();
 
-                final ApplicationInfo info = t.queryById(id);
-                this.mySqlConnection.setLastUseTime();
+            final ApplicationInfo info = t.queryById(id);
 
-                if (info == null) return null;
+            if (info == null) return null;
 
-                final int deleted = t.deleteById(id);
+            final int deleted = t.deleteById(id);
 
-                if (deleted != 1) throw new RuntimeException("删除了%d条数据！".formatted(deleted));
+            // 已经被其它线程取走
+            if (deleted == 0) return null;
 
-                return info;
+            if (deleted != 1) throw new RuntimeException("删除了%d条数据！".formatted(deleted));
 
-            } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
-                }
-                throw e;
-            }
+            return info;
+        });
+        this.onTaken(taken);
+        return taken;
+    }
+
+    public @NotNull CompletableFuture<Integer> addWithCheckAsync(@NotNull ApplicationInfo info) {
+        // 名字不正确时不需要提交任务
+        try {
+            this.checkNameValid(info.name());
+        } catch (InvalidNameException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        return this.asyncExecutor.supply(() -> this.addNoCheck(info));
+    }
+
+    public @NotNull CompletableFuture<Integer> addNoCheckAsync(@NotNull ApplicationInfo info) {
+        return this.asyncExecutor.supply(() -> this.addNoCheck(info));
+    }
+
+    public @NotNull CompletableFuture<ApplicationInfo> takeByIdAsync(int id) {
+        return this.asyncExecutor.supply(() -> this.takeById(id));
+    }
+
+    public @NotNull CompletableFuture<ApplicationInfo> takeByUuidAsync(@NotNull UUID uuid) {
+        return this.asyncExecutor.supply(() -> this.takeByUuid(uuid));
+    }
+
+    public @NotNull CompletableFuture<ApplicationInfo> queryByNameAsync(@NotNull String name) {
+        return this.asyncExecutor.supply(() -> this.queryByName(name));
+    }
+
+    public @NotNull CompletableFuture<List<ApplicationInfo>> queryAfterAsync(@Nullable Cursor cursor, int limit) {
+        return this.asyncExecutor.supply(() -> this.queryAfter(cursor, limit));
+    }
+
+    // 计数已经加载时立即完成
+    public @NotNull CompletableFuture<Integer> getPendingCountAsync() {
+        final int c = this.pendingCount.get();
+        if (c >= 0) return CompletableFuture.completedFuture(c);
+        return this.asyncExecutor.supply(this::getPendingCount);
     }
 }
@@ -7,6 +7,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -28,6 +30,14 @@ class ApplicationTable extends Parser<ApplicationInfo> {
 
     private PreparedStatement psQueryCount = null;
 
+    private PreparedStatement psQueryAfter = null;
+
+    private PreparedStatement psQueryBefore = null;
+
+    private PreparedStatement psQueryAfterId = null;
+
+    private PreparedStatement psInsertIfNameFree = null;
+
     private final @NotNull Connection connection;
 
     ApplicationTable(@NotNull Connection connection) throws SQLException {
@@ -53,33 +63,43 @@ class ApplicationTable extends Parser<ApplicationInfo> {
 
     private @NotNull PreparedStatement getStatementInsert() throws SQLException {
         if (this.statementInsert == null) {
-            this.statementInsert = this.connection.prepareStatement
-                    ("INSERT INTO %s (uid1, uid2, name, time, coins) VALUES (?, ?, ?, ?, ?)".formatted(NAME),
+            this.statementInsert = SqlTracer.prepare(this.connection, "INSERT INTO %s (uid1, uid2, name, time, coins) VALUES (?, ?, ?, ?, ?)".formatted(NAME),
                             Statement.RETURN_GENERATED_KEYS);
         }
         return this.statementInsert;
     }
 
+    // 名字没有被注册时才插入，检查和插入在同一条语句中
+    private @NotNull PreparedStatement getPsInsertIfNameFree(@NotNull Dialect dialect) throws SQLException {
+        if (this.psInsertIfNameFree == null) {
+            // SQLite不支持DUAL，可以省略FROM
+            final String dual = dialect == Dialect.MYSQL || dialect == Dialect.H2 ? " FROM DUAL" : "";
+            this.psInsertIfNameFree = SqlTracer.prepare(this.connection, """
+                    INSERT INTO %s (uid1, uid2, name, time, coins)
+                    SELECT ?, ?, ?, ?, ?%s
+                    WHERE NOT EXISTS (SELECT 1 FROM chinese_name WHERE name = ?)""".formatted(NAME, dual),
+                    Statement.RETURN_GENERATED_KEYS);
+        }
+        return this.psInsertIfNameFree;
+    }
+
     private @NotNull PreparedStatement getStatementDeleteById() throws SQLException {
         if (this.statementDeleteById == null) {
-            this.statementDeleteById = this.connection.prepareStatement
-                    ("DELETE FROM %s WHERE id=? LIMIT 1".formatted(NAME));
+            this.statementDeleteById = SqlTracer.prepare(this.connection, "DELETE FROM %s WHERE id=? LIMIT 1".formatted(NAME));
         }
         return this.statementDeleteById;
     }
 
     private @NotNull PreparedStatement getStatementQueryById() throws SQLException {
         if (this.statementQueryById == null) {
-            this.statementQueryById = this.connection.prepareStatement
-                    ("SELECT id, uid1, uid2, name, time, coins FROM %s WHERE id=? LIMIT 1".formatted(NAME));
+            this.statementQueryById = SqlTracer.prepare(this.connection, "SELECT id, uid1, uid2, name, time, coins FROM %s WHERE id=? LIMIT 1".formatted(NAME));
         }
         return this.statementQueryById;
     }
 
     private @NotNull PreparedStatement getStatementQueryByName() throws SQLException {
         if (this.statementQueryByName == null) {
-            this.statementQueryByName = this.connection.prepareStatement
-                    ("SELECT id, uid1, uid2, name, time, coins FROM %s WHERE name=? LIMIT 1".formatted(NAME));
+            this.statementQueryByName = SqlTracer.prepare(this.connection, "SELECT id, uid1, uid2, name, time, coins FROM %s WHERE name=? LIMIT 1".formatted(NAME));
         }
         return this.statementQueryByName;
     }
@@ -87,8 +107,7 @@ class ApplicationTable extends Parser<ApplicationInfo> {
     private @NotNull PreparedStatement getStatementQueryWithPage() throws SQLException {
 
         if (this.statementQueryWithPage == null) {
-            this.statementQueryWithPage = this.connection.prepareStatement
-                    ("SELECT id, uid1, uid2, name, time, coins FROM %s LIMIT ? OFFSET ?".formatted(NAME));
+            this.statementQueryWithPage = SqlTracer.prepare(this.connection, "SELECT id, uid1, uid2, name, time, coins FROM %s ORDER BY time, id LIMIT ? OFFSET ?".formatted(NAME));
         }
 
         return this.statementQueryWithPage;
@@ -96,7 +115,7 @@ class ApplicationTable extends Parser<ApplicationInfo> {
 
     private @NotNull PreparedStatement getPsQueryByUuid() throws SQLException {
         if (this.psQueryByUuid == null) {
-            this.psQueryByUuid = this.connection.prepareStatement("""
+            this.psQueryByUuid = SqlTracer.prepare(this.connection, """
                     SELECT id, uid1, uid2, name, time, coins
                     FROM %s
                     WHERE (uid1, uid2) = (?, ?)
@@ -107,17 +126,61 @@ class ApplicationTable extends Parser<ApplicationInfo> {
 
     private @NotNull PreparedStatement getPsQueryCount() throws SQLException {
         if (this.psQueryCount == null) {
-            this.psQueryCount = this.connection.prepareStatement("""
+            this.psQueryCount = SqlTracer.prepare(this.connection, """
                     SELECT COUNT(*)
                     FROM %s;""".formatted(NAME));
         }
         return this.psQueryCount;
     }
 
+    private @NotNull PreparedStatement getPsQueryAfter() throws SQLException {
+        if (this.psQueryAfter == null) {
+            this.psQueryAfter = SqlTracer.prepare(this.connection, """
+                    SELECT id, uid1, uid2, name, time, coins
+                    FROM %s
+                    WHERE time > ? OR (time = ? AND id > ?)
+                    ORDER BY time, id
+                    LIMIT ?;""".formatted(NAME));
+        }
+        return this.psQueryAfter;
+    }
+
+    private @NotNull PreparedStatement getPsQueryBefore() throws SQLException {
+        if (this.psQueryBefore == null) {
+            this.psQueryBefore = SqlTracer.prepare(this.connection, """
+                    SELECT id, uid1, uid2, name, time, coins
+                    FROM %s
+                    WHERE time < ? OR (time = ? AND id < ?)
+                    ORDER BY time DESC, id DESC
+                    LIMIT ?;""".formatted(NAME));
+        }
+        return this.psQueryBefore;
+    }
+
+    private @NotNull PreparedStatement getPsQueryAfterId() throws SQLException {
+        if (this.psQueryAfterId == null) {
+            this.psQueryAfterId = SqlTracer.prepare(this.connection, """
+                    SELECT id, uid1, uid2, name, time, coins
+                    FROM %s
+                    WHERE id > ?
+                    ORDER BY id
+                    LIMIT ?;""".formatted(NAME));
+        }
+        return this.psQueryAfterId;
+    }
+
     int queryCount() throws SQLException {
         final PreparedStatement c = this.getPsQueryCount();
-        final ResultSet resultSet = c.executeQuery();
-        return Parser.parseOneInt(resultSet);
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = c.executeQuery();
+            final int count = Parser.parseOneInt(resultSet);
+            SqlTracer.end(c, begin, 1);
+            return count;
+        } catch (SQLException e) {
+            SqlTracer.fail(c, begin, e);
+            throw e;
+        }
     }
 
     @Override
@@ -145,11 +208,48 @@ class ApplicationTable extends Parser<ApplicationInfo> {
         ps.setLong(4, info.time());
         ps.setLong(5, info.coins());
 
-        ps.executeUpdate();
+        final long begin = SqlTracer.begin();
+        try {
+            final int inserted = ps.executeUpdate();
 
-        final ResultSet generatedKeys = ps.getGeneratedKeys();
+            final ResultSet generatedKeys = ps.getGeneratedKeys();
 
-        return Parser.parseOneInt(generatedKeys);
+            final int id = Parser.parseOneInt(generatedKeys);
+            SqlTracer.end(ps, begin, inserted, info.uuid(), info.name(), info.time(), info.coins());
+            return id;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, info.uuid(), info.name(), info.time(), info.coins());
+            throw e;
+        }
+    }
+
+    // 返回申请的ID，返回0表示名字已经被注册，没有插入
+    // 同一个玩家重复申请、名字已经被申请时违反唯一约束
+    int insertIfNameFree(@NotNull ApplicationInfo info, @NotNull Dialect dialect) throws SQLException {
+        final PreparedStatement ps = this.getPsInsertIfNameFree(dialect);
+        ps.setLong(1, info.uuid().getMostSignificantBits());
+        ps.setLong(2, info.uuid().getLeastSignificantBits());
+        ps.setString(3, info.name());
+        ps.setLong(4, info.time());
+        ps.setLong(5, info.coins());
+        ps.setString(6, info.name());
+
+        final long begin = SqlTracer.begin();
+        try {
+            if (ps.executeUpdate() == 0) {
+                SqlTracer.end(ps, begin, 0, info.uuid(), info.name(), info.time(), info.coins(), info.name());
+                return 0;
+            }
+
+            final ResultSet generatedKeys = ps.getGeneratedKeys();
+
+            final int id = Parser.parseOneInt(generatedKeys);
+            SqlTracer.end(ps, begin, 1, info.uuid(), info.name(), info.time(), info.coins(), info.name());
+            return id;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, info.uuid(), info.name(), info.time(), info.coins(), info.name());
+            throw e;
+        }
     }
 
     int deleteById(int id) throws SQLException {
@@ -157,7 +257,15 @@ class ApplicationTable extends Parser<ApplicationInfo> {
 
         ps.setInt(1, id);
 
-        return ps.executeUpdate();
+        final long begin = SqlTracer.begin();
+        try {
+            final int deleted = ps.executeUpdate();
+            SqlTracer.end(ps, begin, deleted, id);
+            return deleted;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, id);
+            throw e;
+        }
     }
 
     @Nullable ApplicationInfo queryById(int id) throws SQLException {
@@ -165,9 +273,16 @@ class ApplicationTable extends Parser<ApplicationInfo> {
 
         ps.setInt(1, id);
 
-        final ResultSet resultSet = ps.executeQuery();
-
-        return this.parseOne(resultSet);
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            final ApplicationInfo info = this.parseOne(resultSet);
+            SqlTracer.end(ps, begin, info == null ? 0 : 1, id);
+            return info;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, id);
+            throw e;
+        }
     }
 
     @Nullable ApplicationInfo queryByName(@NotNull String name) throws SQLException {
@@ -175,17 +290,32 @@ class ApplicationTable extends Parser<ApplicationInfo> {
 
         ps.setString(1, name);
 
-        final ResultSet resultSet = ps.executeQuery();
-
-        return this.parseOne(resultSet);
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            final ApplicationInfo info = this.parseOne(resultSet);
+            SqlTracer.end(ps, begin, info == null ? 0 : 1, name);
+            return info;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, name);
+            throw e;
+        }
     }
 
     @Nullable ApplicationInfo queryByUuid(@NotNull UUID uuid) throws SQLException {
         final PreparedStatement ps = this.getPsQueryByUuid();
         ps.setLong(1, uuid.getMostSignificantBits());
         ps.setLong(2, uuid.getLeastSignificantBits());
-        final ResultSet resultSet = ps.executeQuery();
-        return this.parseOne(resultSet);
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            final ApplicationInfo info = this.parseOne(resultSet);
+            SqlTracer.end(ps, begin, info == null ? 0 : 1, uuid);
+            return info;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, uuid);
+            throw e;
+        }
     }
 
     @NotNull List<ApplicationInfo> queryWithPage(int limit, int offset) throws SQLException {
@@ -194,8 +324,78 @@ class ApplicationTable extends Parser<ApplicationInfo> {
         ps.setInt(1, limit);
         ps.setInt(2, offset);
 
-        final ResultSet resultSet = ps.executeQuery();
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            final List<ApplicationInfo> list = this.parseAll(resultSet);
+            SqlTracer.end(ps, begin, list.size(), limit, offset);
+            return list;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, limit, offset);
+            throw e;
+        }
+    }
+
+    // 按 (time, id) 排序，在 (time, id) 之后的limit条
+    @NotNull List<ApplicationInfo> queryAfter(long time, int id, int limit) throws SQLException {
+        final PreparedStatement ps = this.getPsQueryAfter();
+
+        ps.setLong(1, time);
+        ps.setLong(2, time);
+        ps.setInt(3, id);
+        ps.setInt(4, limit);
+
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            final List<ApplicationInfo> list = this.parseAll(resultSet);
+            SqlTracer.end(ps, begin, list.size(), time, id, limit);
+            return list;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, time, id, limit);
+            throw e;
+        }
+    }
+
+    // 按 (time, id) 排序，在 (time, id) 之前的limit条
+    @NotNull List<ApplicationInfo> queryBefore(long time, int id, int limit) throws SQLException {
+        final PreparedStatement ps = this.getPsQueryBefore();
+
+        ps.setLong(1, time);
+        ps.setLong(2, time);
+        ps.setInt(3, id);
+        ps.setInt(4, limit);
+
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+
+            final ArrayList<ApplicationInfo> list = new ArrayList<>(this.parseAll(resultSet));
+            SqlTracer.end(ps, begin, list.size(), time, id, limit);
+            Collections.reverse(list);
+            return list;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, time, id, limit);
+            throw e;
+        }
+    }
+
+    // 按主键顺序，id之后的limit条，用于导出
+    @NotNull List<ApplicationInfo> queryAfterId(int id, int limit) throws SQLException {
+        final PreparedStatement ps = this.getPsQueryAfterId();
 
-        return this.parseAll(resultSet);
+        ps.setInt(1, id);
+        ps.setInt(2, limit);
+
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            final List<ApplicationInfo> list = this.parseAll(resultSet);
+            SqlTracer.end(ps, begin, list.size(), id, limit);
+            return list;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, id, limit);
+            throw e;
+        }
     }
 }
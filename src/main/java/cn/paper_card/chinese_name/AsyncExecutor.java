@@ -0,0 +1,60 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 执行异步服务调用的专用线程池，队列有界，队列满时直接以失败完成
+class AsyncExecutor {
+
+    interface Task<R> {
+        R call() throws Exception;
+    }
+
+    private final @NotNull ThreadPoolExecutor executor;
+
+    AsyncExecutor(int threads, int queueSize) {
+        final AtomicInteger count = new AtomicInteger(0);
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    final Thread thread = new Thread(r, "ChineseName-Async-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // 任务中执行的SQL记录为提交任务的命令调用的
+    <R> @NotNull CompletableFuture<R> supply(@NotNull Task<R> task) {
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        final String caller = SqlTracer.getCaller();
+        try {
+            this.executor.execute(() -> SqlTracer.runWithCaller(caller, () -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // 等待已提交的任务执行完
+    void shutdown() {
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(5, TimeUnit.SECONDS)) this.executor.shutdownNow();
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,29 +1,81 @@
 package cn.paper_card.chinese_name;
 
 import cn.paper_card.chinese_name.api.ChineseNameApi;
-import cn.paper_card.chinese_name.api.NameInfo;
-import cn.paper_card.database.api.DatabaseApi;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
 
+import java.io.File;
 import java.sql.SQLException;
+import java.util.List;
 
 class ChineseNameApiImpl implements ChineseNameApi {
 
+    private final @NotNull SessionSource source;
+
+    // 只用于表结构迁移，执行DDL期间服务的查询和写入不需要等待
+    private final @NotNull SessionSource migrationSource;
+
+    private final @NotNull AsyncExecutor asyncExecutor;
+
     private final @NotNull NameServiceImpl nameService;
 
     private final @NotNull ApplicationServiceImpl applicationService;
 
-    ChineseNameApiImpl(@NotNull DatabaseApi.MySqlConnection important) {
+    private final @NotNull ServiceMetrics metrics = new ServiceMetrics();
 
-        this.nameService = new NameServiceImpl(important);
+    ChineseNameApiImpl(@NotNull SessionSource source, @NotNull SessionSource migrationSource, @NotNull AsyncExecutor asyncExecutor) {
+        this.source = source;
+        this.migrationSource = migrationSource;
+        this.asyncExecutor = asyncExecutor;
 
-        this.applicationService = new ApplicationServiceImpl(important, new ApplicationServiceImpl.NameChecker() {
-            @Override
-            public @Nullable NameInfo queryByName(@NotNull String name) throws SQLException {
-                return nameService.queryByName(name);
-            }
+        // 两个服务共用，保证同一个名字的申请和注册不会同时进行
+        final StripedLocks locks = new StripedLocks(64);
+
+        this.nameService = new NameServiceImpl(source, locks, asyncExecutor, this.metrics);
+
+        this.applicationService = new ApplicationServiceImpl(source, locks, asyncExecutor, this.metrics);
+    }
+
+    // 先确保表存在，再执行未执行的表结构迁移
+    // 迁移成功之后服务才使用依赖主键和唯一键的语句
+    @NotNull List<SchemaMigrator.Migration> migrate(@Nullable Logger logger) throws SQLException {
+        final List<SchemaMigrator.Migration> applied = this.migrationSource.execute(s -> {
+            s.getNameTable();
+            s.getApplicationTable();
+            return new SchemaMigrator(logger).migrate(s.getConnection());
         });
+        this.nameService.setUniqueKeysReady(true);
+        this.applicationService.setUniqueKeysReady(true);
+        return applied;
+    }
+
+    // 导入前应该先执行migrate，保证 (uid1, uid2) 是主键
+    @NotNull NameImporter createNameImporter(@NotNull File checkpointFile, @NotNull File reportFile) {
+        return new NameImporter(this.source, this.nameService, checkpointFile, reportFile);
+    }
+
+    @NotNull DataExporter createDataExporter() {
+        return new DataExporter(this.source, 1000);
+    }
+
+    void destroy() throws SQLException {
+        // 先等待异步任务执行完，写入延迟的更新，再关闭连接
+        this.asyncExecutor.shutdown();
+        try {
+            this.nameService.flushPending();
+        } finally {
+            this.nameService.destroy();
+            try {
+                this.migrationSource.close();
+            } finally {
+                this.source.close();
+            }
+        }
+    }
+
+    @NotNull ServiceMetrics getMetrics() {
+        return this.metrics;
     }
 
     @Override
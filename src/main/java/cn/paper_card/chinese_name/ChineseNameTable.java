@@ -1,20 +1,22 @@
 package cn.paper_card.chinese_name;
 
 import cn.paper_card.chinese_name.api.NameInfo;
+import cn.paper_card.database.api.Parser;
 import cn.paper_card.database.api.Util;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.UUID;
+import java.sql.*;
+import java.util.*;
+import java.util.function.Consumer;
 
 class ChineseNameTable {
 
     private static final String TABLE_NAME = "chinese_name";
 
+    // 批量查询时每条语句包含的UUID数量
+    static final int BATCH_QUERY_SIZE = 100;
+
     private PreparedStatement statementQueryByUuid = null;
     private PreparedStatement statementQueryByName = null;
 
@@ -24,6 +26,22 @@ class ChineseNameTable {
 
     private PreparedStatement statementUpdate = null;
 
+    private PreparedStatement statementQueryAllNames = null;
+
+    private PreparedStatement statementQueryCount = null;
+
+    private PreparedStatement statementQueryByUuids = null;
+
+    private PreparedStatement statementQueryByNames = null;
+
+    private PreparedStatement statementUpsert = null;
+
+    private PreparedStatement statementQueryFirstPage = null;
+
+    private PreparedStatement statementQueryPageAfter = null;
+
+    private PreparedStatement statementUpdateEnable = null;
+
     private final @NotNull Connection connection;
 
     ChineseNameTable(@NotNull Connection connection) throws SQLException {
@@ -48,44 +66,113 @@ class ChineseNameTable {
 
     private @NotNull PreparedStatement getStatementInsert() throws SQLException {
         if (this.statementInsert == null) {
-            this.statementInsert = this.connection.prepareStatement
-                    ("INSERT INTO %s (uid1, uid2, name, time, enable) values (?, ?, ?, ?, ?)".formatted(TABLE_NAME));
+            this.statementInsert = SqlTracer.prepare(this.connection, "INSERT INTO %s (uid1, uid2, name, time, enable) values (?, ?, ?, ?, ?)".formatted(TABLE_NAME));
         }
         return this.statementInsert;
     }
 
     private @NotNull PreparedStatement getStatementDelete() throws SQLException {
         if (this.statementDelete == null) {
-            this.statementDelete = this.connection.prepareStatement
-                    ("DELETE FROM %s WHERE uid1=? AND uid2=? LIMIT 1".formatted(TABLE_NAME));
+            this.statementDelete = SqlTracer.prepare(this.connection, "DELETE FROM %s WHERE uid1=? AND uid2=? LIMIT 1".formatted(TABLE_NAME));
         }
         return statementDelete;
     }
 
     private @NotNull PreparedStatement getStatementUpdate() throws SQLException {
         if (this.statementUpdate == null) {
-            this.statementUpdate = this.connection.prepareStatement
-                    ("UPDATE %s SET name=?, time=?, enable=? WHERE uid1=? AND uid2=? LIMIT 1".formatted(TABLE_NAME));
+            this.statementUpdate = SqlTracer.prepare(this.connection, "UPDATE %s SET name=?, time=?, enable=? WHERE uid1=? AND uid2=? LIMIT 1".formatted(TABLE_NAME));
         }
         return statementUpdate;
     }
 
     private PreparedStatement getStatementQueryByName() throws SQLException {
         if (this.statementQueryByName == null) {
-            this.statementQueryByName = this.connection.prepareStatement
-                    ("SELECT uid1, uid2, name, time, enable FROM %s WHERE name=? LIMIT 1".formatted(TABLE_NAME));
+            this.statementQueryByName = SqlTracer.prepare(this.connection, "SELECT uid1, uid2, name, time, enable FROM %s WHERE name=? LIMIT 1".formatted(TABLE_NAME));
         }
         return statementQueryByName;
     }
 
     private @NotNull PreparedStatement getStatementQueryByUuid() throws SQLException {
         if (this.statementQueryByUuid == null) {
-            this.statementQueryByUuid = this.connection.prepareStatement
-                    ("SELECT uid1, uid2, name, time, enable FROM %s WHERE uid1=? AND uid2=? LIMIT 1".formatted(TABLE_NAME));
+            this.statementQueryByUuid = SqlTracer.prepare(this.connection, "SELECT uid1, uid2, name, time, enable FROM %s WHERE uid1=? AND uid2=? LIMIT 1".formatted(TABLE_NAME));
         }
         return this.statementQueryByUuid;
     }
 
+    private @NotNull PreparedStatement getStatementQueryAllNames() throws SQLException {
+        if (this.statementQueryAllNames == null) {
+            this.statementQueryAllNames = SqlTracer.prepare(this.connection, "SELECT name FROM %s".formatted(TABLE_NAME));
+        }
+        return this.statementQueryAllNames;
+    }
+
+    private @NotNull PreparedStatement getStatementQueryCount() throws SQLException {
+        if (this.statementQueryCount == null) {
+            this.statementQueryCount = SqlTracer.prepare(this.connection, "SELECT COUNT(*) FROM %s".formatted(TABLE_NAME));
+        }
+        return this.statementQueryCount;
+    }
+
+    private @NotNull PreparedStatement getStatementQueryByUuids() throws SQLException {
+        if (this.statementQueryByUuids == null) {
+            final StringJoiner joiner = new StringJoiner(", ");
+            for (int i = 0; i < BATCH_QUERY_SIZE; ++i) joiner.add("(?, ?)");
+
+            this.statementQueryByUuids = SqlTracer.prepare(this.connection, "SELECT uid1, uid2, name, time, enable FROM %s WHERE (uid1, uid2) IN (%s)".formatted(TABLE_NAME, joiner));
+        }
+        return this.statementQueryByUuids;
+    }
+
+    private @NotNull PreparedStatement getStatementQueryByNames() throws SQLException {
+        if (this.statementQueryByNames == null) {
+            final StringJoiner joiner = new StringJoiner(", ");
+            for (int i = 0; i < BATCH_QUERY_SIZE; ++i) joiner.add("?");
+            this.statementQueryByNames = SqlTracer.prepare(this.connection, "SELECT uid1, uid2, name, time, enable FROM %s WHERE name IN (%s)".formatted(TABLE_NAME, joiner));
+        }
+        return this.statementQueryByNames;
+    }
+
+    // 按UUID插入或者更新，名字已经被其它UUID占用时：
+    // MySQL影响0行，其它数据库违反唯一约束
+    private @NotNull PreparedStatement getStatementUpsert(@NotNull Dialect dialect) throws SQLException {
+        if (this.statementUpsert == null) {
+            final String sql = switch (dialect) {
+                case MYSQL -> """
+                        INSERT INTO %s (uid1, uid2, name, time, enable)
+                        SELECT ?, ?, ?, ?, ? FROM DUAL
+                        WHERE NOT EXISTS (SELECT 1 FROM %s WHERE name=? AND (uid1<>? OR uid2<>?))
+                        ON DUPLICATE KEY UPDATE name=?, time=?, enable=?""".formatted(TABLE_NAME, TABLE_NAME);
+                case H2 -> "MERGE INTO %s (uid1, uid2, name, time, enable) KEY (uid1, uid2) VALUES (?, ?, ?, ?, ?)".formatted(TABLE_NAME);
+                default -> throw new SQLFeatureNotSupportedException("不支持的数据库：" + dialect);
+            };
+            this.statementUpsert = SqlTracer.prepare(this.connection, sql);
+        }
+        return this.statementUpsert;
+    }
+
+    private @NotNull PreparedStatement getStatementQueryFirstPage() throws SQLException {
+        if (this.statementQueryFirstPage == null) {
+            this.statementQueryFirstPage = SqlTracer.prepare(this.connection, "SELECT uid1, uid2, name, time, enable FROM %s ORDER BY uid1, uid2 LIMIT ?".formatted(TABLE_NAME));
+        }
+        return this.statementQueryFirstPage;
+    }
+
+    private @NotNull PreparedStatement getStatementQueryPageAfter() throws SQLException {
+        if (this.statementQueryPageAfter == null) {
+            this.statementQueryPageAfter = SqlTracer.prepare(this.connection, "SELECT uid1, uid2, name, time, enable FROM %s WHERE uid1 > ? OR (uid1 = ? AND uid2 > ?) ORDER BY uid1, uid2 LIMIT ?".formatted(TABLE_NAME));
+        }
+        return this.statementQueryPageAfter;
+    }
+
+    // 只更新time不比它新的行
+    private @NotNull PreparedStatement getStatementUpdateEnable() throws SQLException {
+        if (this.statementUpdateEnable == null) {
+            this.statementUpdateEnable = SqlTracer.prepare(this.connection,
+                    "UPDATE %s SET enable=?, time=? WHERE uid1=? AND uid2=? AND time<=?".formatted(TABLE_NAME));
+        }
+        return this.statementUpdateEnable;
+    }
+
     private @NotNull NameInfo parseRow(@NotNull ResultSet resultSet) throws SQLException {
         final long uid1 = resultSet.getLong(1);
         final long uid2 = resultSet.getLong(2);
@@ -128,9 +215,17 @@ class ChineseNameTable {
 
         ps.setString(1, name);
 
-        final ResultSet resultSet = ps.executeQuery();
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            final NameInfo info = this.parseOne(resultSet);
+            SqlTracer.end(ps, begin, info == null ? 0 : 1, name);
 
-        return this.parseOne(resultSet);
+            return info;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, name);
+            throw e;
+        }
     }
 
     @Nullable NameInfo queryByUuid(@NotNull UUID uuid) throws SQLException {
@@ -139,9 +234,276 @@ class ChineseNameTable {
         ps.setLong(1, uuid.getMostSignificantBits());
         ps.setLong(2, uuid.getLeastSignificantBits());
 
-        final ResultSet resultSet = ps.executeQuery();
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            final NameInfo info = this.parseOne(resultSet);
+            SqlTracer.end(ps, begin, info == null ? 0 : 1, uuid);
+
+            return info;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, uuid);
+            throw e;
+        }
+    }
+
+    // 没有中文名的UUID不在结果中
+    @NotNull Map<UUID, NameInfo> queryByUuids(@NotNull List<UUID> uuids) throws SQLException {
+        final PreparedStatement ps = this.getStatementQueryByUuids();
+        final HashMap<UUID, NameInfo> map = new HashMap<>();
+
+        final int total = uuids.size();
+        for (int start = 0; start < total; start += BATCH_QUERY_SIZE) {
+
+            // 最后一批不足时重复最后一个UUID，这样可以复用同一条预编译语句
+            for (int i = 0; i < BATCH_QUERY_SIZE; ++i) {
+                final UUID uuid = uuids.get(Math.min(start + i, total - 1));
+                ps.setLong(i * 2 + 1, uuid.getMostSignificantBits());
+                ps.setLong(i * 2 + 2, uuid.getLeastSignificantBits());
+            }
+
+            final long begin = SqlTracer.begin();
+            try {
+                final ResultSet resultSet = ps.executeQuery();
+                int rows = 0;
+                try {
+                    while (resultSet.next()) {
+                        final NameInfo info = this.parseRow(resultSet);
+                        map.put(info.uuid(), info);
+                        ++rows;
+                    }
+                } catch (SQLException e) {
+                    try {
+                        resultSet.close();
+                    } catch (SQLException ignored) {
+                    }
+                    throw e;
+                }
+                resultSet.close();
+                SqlTracer.end(ps, begin, rows, "%d个UUID".formatted(Math.min(BATCH_QUERY_SIZE, total - start)));
+            } catch (SQLException e) {
+                SqlTracer.fail(ps, begin, e, "%d个UUID".formatted(Math.min(BATCH_QUERY_SIZE, total - start)));
+                throw e;
+            }
+        }
+
+        return map;
+    }
+
+    // 查询这些名字现在属于谁，没有被注册的名字不在结果中
+    @NotNull Map<String, NameInfo> queryByNames(@NotNull List<String> names) throws SQLException {
+        final PreparedStatement ps = this.getStatementQueryByNames();
+        final HashMap<String, NameInfo> map = new HashMap<>();
+
+        final int total = names.size();
+        for (int start = 0; start < total; start += BATCH_QUERY_SIZE) {
+
+            // 和queryByUuids一样，不足时重复最后一个
+            for (int i = 0; i < BATCH_QUERY_SIZE; ++i) {
+                ps.setString(i + 1, names.get(Math.min(start + i, total - 1)));
+            }
+
+            final long begin = SqlTracer.begin();
+            try {
+                final ResultSet resultSet = ps.executeQuery();
+                int rows = 0;
+                try {
+                    while (resultSet.next()) {
+                        final NameInfo info = this.parseRow(resultSet);
+                        map.put(info.name(), info);
+                        ++rows;
+                    }
+                } catch (SQLException e) {
+                    try {
+                        resultSet.close();
+                    } catch (SQLException ignored) {
+                    }
+                    throw e;
+                }
+                resultSet.close();
+                SqlTracer.end(ps, begin, rows, "%d个名字".formatted(Math.min(BATCH_QUERY_SIZE, total - start)));
+            } catch (SQLException e) {
+                SqlTracer.fail(ps, begin, e, "%d个名字".formatted(Math.min(BATCH_QUERY_SIZE, total - start)));
+                throw e;
+            }
+        }
+
+        return map;
+    }
+
+    // 批量插入或者更新，返回每一条的影响行数
+    // MySQL中为0表示名字已经被其它UUID占用，没有写入
+    // SQLite不能给已有的表添加主键，和其它数据库一样先批量更新，再批量插入没有更新到的
+    int @NotNull [] upsertBatch(@NotNull List<NameInfo> list, @NotNull Dialect dialect) throws SQLException {
+        if (dialect != Dialect.MYSQL && dialect != Dialect.H2) return this.updateOrInsertBatch(list);
+
+        final PreparedStatement ps = this.getStatementUpsert(dialect);
+        for (final NameInfo info : list) {
+            bindUpsert(ps, info, dialect);
+            ps.addBatch();
+        }
+
+        final long begin = SqlTracer.begin();
+        try {
+            final int[] counts = ps.executeBatch();
+            SqlTracer.end(ps, begin, sum(counts), "批量%d条".formatted(list.size()));
+            return counts;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, "批量%d条".formatted(list.size()));
+            throw e;
+        }
+    }
+
+    // 批量执行的总影响行数，驱动不知道具体行数时为SUCCESS_NO_INFO，按0计算
+    private static int sum(int @NotNull [] counts) {
+        int total = 0;
+        for (final int c : counts) total += Math.max(c, 0);
+        return total;
+    }
+
+    private static void bindUpsert(@NotNull PreparedStatement ps, @NotNull NameInfo info, @NotNull Dialect dialect) throws SQLException {
+        ps.setLong(1, info.uuid().getMostSignificantBits());
+        ps.setLong(2, info.uuid().getLeastSignificantBits());
+        ps.setString(3, info.name());
+        ps.setLong(4, info.time());
+        ps.setInt(5, info.enable() ? 1 : 0);
+
+        if (dialect == Dialect.MYSQL) {
+            ps.setString(6, info.name());
+            ps.setLong(7, info.uuid().getMostSignificantBits());
+            ps.setLong(8, info.uuid().getLeastSignificantBits());
+            ps.setString(9, info.name());
+            ps.setLong(10, info.time());
+            ps.setInt(11, info.enable() ? 1 : 0);
+        }
+    }
+
+    // 只用于MySQL，需要 (uid1, uid2) 是主键
+    // 返回1表示插入，2表示更新，0表示名字已经属于其它UUID
+    // 新旧值完全相同时MySQL也返回1（默认返回匹配的行数），time每次都不同，实际不会出现
+    int upsert(@NotNull NameInfo info) throws SQLException {
+        final PreparedStatement ps = this.getStatementUpsert(Dialect.MYSQL);
+        bindUpsert(ps, info, Dialect.MYSQL);
+
+        final long begin = SqlTracer.begin();
+        try {
+            final int affected = ps.executeUpdate();
+            SqlTracer.end(ps, begin, affected, info.uuid(), info.name(), info.time(), info.enable());
+            return affected;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, info.uuid(), info.name(), info.time(), info.enable());
+            throw e;
+        }
+    }
+
+    private int @NotNull [] updateOrInsertBatch(@NotNull List<NameInfo> list) throws SQLException {
+        final PreparedStatement update = this.getStatementUpdate();
+        for (final NameInfo info : list) {
+            update.setString(1, info.name());
+            update.setLong(2, info.time());
+            update.setInt(3, info.enable() ? 1 : 0);
+            update.setLong(4, info.uuid().getMostSignificantBits());
+            update.setLong(5, info.uuid().getLeastSignificantBits());
+            update.addBatch();
+        }
+        final int[] counts;
+        final long begin = SqlTracer.begin();
+        try {
+            counts = update.executeBatch();
+        } catch (SQLException e) {
+            SqlTracer.fail(update, begin, e, "批量%d条".formatted(list.size()));
+            throw e;
+        }
+        SqlTracer.end(update, begin, sum(counts), "批量%d条".formatted(list.size()));
+
+        final PreparedStatement insert = this.getStatementInsert();
+        int insertCount = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] != 0) continue;
+            final NameInfo info = list.get(i);
+            insert.setLong(1, info.uuid().getMostSignificantBits());
+            insert.setLong(2, info.uuid().getLeastSignificantBits());
+            insert.setString(3, info.name());
+            insert.setLong(4, info.time());
+            insert.setInt(5, info.enable() ? 1 : 0);
+            insert.addBatch();
+            ++insertCount;
+        }
+        if (insertCount == 0) return counts;
+
+        final int[] inserted;
+        final long begin2 = SqlTracer.begin();
+        try {
+            inserted = insert.executeBatch();
+        } catch (SQLException e) {
+            SqlTracer.fail(insert, begin2, e, "批量%d条".formatted(insertCount));
+            throw e;
+        }
+        SqlTracer.end(insert, begin2, sum(inserted), "批量%d条".formatted(insertCount));
+        for (int i = 0, j = 0; i < counts.length; ++i) {
+            if (counts[i] == 0) counts[i] = inserted[j++];
+        }
+        return counts;
+    }
+
+    // 批量启用或者禁用，已经被更新的或者没有中文名的影响0行
+    int @NotNull [] updateEnableBatch(@NotNull List<NameWriteBehind.Pending> list) throws SQLException {
+        final PreparedStatement ps = this.getStatementUpdateEnable();
+        for (final NameWriteBehind.Pending p : list) {
+            ps.setInt(1, p.enable() ? 1 : 0);
+            ps.setLong(2, p.time());
+            ps.setLong(3, p.uuid().getMostSignificantBits());
+            ps.setLong(4, p.uuid().getLeastSignificantBits());
+            ps.setLong(5, p.time());
+            ps.addBatch();
+        }
+
+        final long begin = SqlTracer.begin();
+        try {
+            final int[] counts = ps.executeBatch();
+            SqlTracer.end(ps, begin, sum(counts), "批量%d条".formatted(list.size()));
+            return counts;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, "批量%d条".formatted(list.size()));
+            throw e;
+        }
+    }
+
+    // 按 (uid1, uid2) 顺序，在after之后的limit条，after为null时从头开始
+    @NotNull List<NameInfo> queryPage(@Nullable UUID after, int limit) throws SQLException {
+        final PreparedStatement ps;
+        if (after == null) {
+            ps = this.getStatementQueryFirstPage();
+            ps.setInt(1, limit);
+        } else {
+            ps = this.getStatementQueryPageAfter();
+            ps.setLong(1, after.getMostSignificantBits());
+            ps.setLong(2, after.getMostSignificantBits());
+            ps.setLong(3, after.getLeastSignificantBits());
+            ps.setInt(4, limit);
+        }
+
+        final ArrayList<NameInfo> list = new ArrayList<>(limit);
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            try {
+                while (resultSet.next()) list.add(this.parseRow(resultSet));
+            } catch (SQLException e) {
+                try {
+                    resultSet.close();
+                } catch (SQLException ignored) {
+                }
+                throw e;
+            }
+            resultSet.close();
+            SqlTracer.end(ps, begin, list.size(), after, limit);
 
-        return this.parseOne(resultSet);
+            return list;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, after, limit);
+            throw e;
+        }
     }
 
     int insert(@NotNull NameInfo info) throws SQLException {
@@ -153,7 +515,15 @@ class ChineseNameTable {
         ps.setLong(4, info.time());
         ps.setInt(5, info.enable() ? 1 : 0);
 
-        return ps.executeUpdate();
+        final long begin = SqlTracer.begin();
+        try {
+            final int inserted = ps.executeUpdate();
+            SqlTracer.end(ps, begin, inserted, info.uuid(), info.name(), info.time(), info.enable());
+            return inserted;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, info.uuid(), info.name(), info.time(), info.enable());
+            throw e;
+        }
     }
 
     int deleteByUuid(@NotNull UUID uuid) throws SQLException {
@@ -162,7 +532,15 @@ class ChineseNameTable {
         ps.setLong(1, uuid.getMostSignificantBits());
         ps.setLong(2, uuid.getLeastSignificantBits());
 
-        return ps.executeUpdate();
+        final long begin = SqlTracer.begin();
+        try {
+            final int deleted = ps.executeUpdate();
+            SqlTracer.end(ps, begin, deleted, uuid);
+            return deleted;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, uuid);
+            throw e;
+        }
     }
 
     int updateByUuid(@NotNull NameInfo info) throws SQLException {
@@ -174,7 +552,57 @@ class ChineseNameTable {
 
         ps.setLong(4, info.uuid().getMostSignificantBits());
         ps.setLong(5, info.uuid().getLeastSignificantBits());
-        return ps.executeUpdate();
+
+        final long begin = SqlTracer.begin();
+        try {
+            final int updated = ps.executeUpdate();
+            SqlTracer.end(ps, begin, updated, info.name(), info.time(), info.enable(), info.uuid());
+            return updated;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e, info.name(), info.time(), info.enable(), info.uuid());
+            throw e;
+        }
+    }
+
+    int queryCount() throws SQLException {
+        final PreparedStatement ps = this.getStatementQueryCount();
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+            final int count = Parser.parseOneInt(resultSet);
+            SqlTracer.end(ps, begin, 1);
+            return count;
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e);
+            throw e;
+        }
     }
 
+    void queryAllNames(@NotNull Consumer<String> consumer) throws SQLException {
+        final PreparedStatement ps = this.getStatementQueryAllNames();
+
+        final long begin = SqlTracer.begin();
+        try {
+            final ResultSet resultSet = ps.executeQuery();
+
+            int rows = 0;
+            try {
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getString(1));
+                    ++rows;
+                }
+            } catch (SQLException e) {
+                try {
+                    resultSet.close();
+                } catch (SQLException ignored) {
+                }
+                throw e;
+            }
+            resultSet.close();
+            SqlTracer.end(ps, begin, rows);
+        } catch (SQLException e) {
+            SqlTracer.fail(ps, begin, e);
+            throw e;
+        }
+    }
 }
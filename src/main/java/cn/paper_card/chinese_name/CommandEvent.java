@@ -0,0 +1,25 @@
+package cn.paper_card.chinese_name;
+
+import jdk.jfr.*;
+
+// 一次子命令的执行，同步部分和异步部分分别记录
+@Name("cn.paper_card.chinese_name.Command")
+@Label("Chinese Name Command")
+@Category({"ChineseName"})
+@Description("/ch-name 子命令的一次执行")
+@StackTrace(false)
+class CommandEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Sender")
+    String sender;
+
+    @Label("Async")
+    boolean async;
+
+    // OK、FAILED（已捕获并报告的异常）、ERROR（抛出的异常）
+    @Label("Outcome")
+    String outcome;
+}
@@ -1,12 +1,51 @@
 package cn.paper_card.chinese_name;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Set;
 
 class ConfigManager {
     private final @NotNull ThePlugin plugin;
     private final @NotNull String path_coins_for_normal = "coins-for-normal";
     private final @NotNull String path_coins_for_special = "coins-for-special";
 
+    private final @NotNull String path_pool_size = "pool.size";
+    private final @NotNull String path_pool_address = "pool.address";
+    private final @NotNull String path_pool_user = "pool.user";
+    private final @NotNull String path_pool_password = "pool.password";
+    private final @NotNull String path_pool_jdbc_url = "pool.jdbc-url";
+    private final @NotNull String path_pool_max_wait = "pool.max-wait-millis";
+    private final @NotNull String path_pool_idle_timeout = "pool.idle-timeout-millis";
+
+    private final @NotNull String path_async_threads = "async.threads";
+    private final @NotNull String path_async_queue_size = "async.queue-size";
+
+    private final @NotNull String path_name_ranges = "name.ranges";
+    private final @NotNull String path_name_min_length = "name.min-length";
+    private final @NotNull String path_name_max_length = "name.max-length";
+
+    private final @NotNull String path_sql_slow_millis = "sql-trace.slow-millis";
+    private final @NotNull String path_sql_redact_params = "sql-trace.redact-params";
+    private final @NotNull String path_sql_top_size = "sql-trace.top-size";
+
+    private final @NotNull String path_write_behind_interval = "write-behind.flush-interval-ticks";
+    private final @NotNull String path_write_behind_max_pending = "write-behind.max-pending";
+
+    private final @NotNull String path_render_display_name = "render.display-name";
+    private final @NotNull String path_render_list_name = "render.player-list-name";
+    private final @NotNull String path_render_nametag = "render.nametag";
+
+    private final @NotNull String path_messages_language = "messages.language";
+
+    private final @NotNull String path_import_sources = "import.sources";
+
+    // 导入命令使用的源数据库，命令中只写名字，账号密码不会出现在聊天和日志中
+    record ImportSource(@NotNull String url, @NotNull String user, @NotNull String password) {
+    }
+
     ConfigManager(@NotNull ThePlugin plugin) {
         this.plugin = plugin;
     }
@@ -27,9 +66,230 @@ class ConfigManager {
         this.plugin.getConfig().set(path_coins_for_special, v);
     }
 
+    // 为0时使用Database插件提供的单个连接
+    int getPoolSize() {
+        return this.plugin.getConfig().getInt(path_pool_size, 0);
+    }
+
+    void setPoolSize(int v) {
+        this.plugin.getConfig().set(path_pool_size, v);
+    }
+
+    @NotNull String getPoolAddress() {
+        return this.plugin.getConfig().getString(path_pool_address, "");
+    }
+
+    void setPoolAddress(@NotNull String v) {
+        this.plugin.getConfig().set(path_pool_address, v);
+    }
+
+    @NotNull String getPoolUser() {
+        return this.plugin.getConfig().getString(path_pool_user, "");
+    }
+
+    void setPoolUser(@NotNull String v) {
+        this.plugin.getConfig().set(path_pool_user, v);
+    }
+
+    @NotNull String getPoolPassword() {
+        return this.plugin.getConfig().getString(path_pool_password, "");
+    }
+
+    void setPoolPassword(@NotNull String v) {
+        this.plugin.getConfig().set(path_pool_password, v);
+    }
+
+    // 不为空时使用JDBC URL连接（例如H2、SQLite），而不是pool.address
+    @NotNull String getPoolJdbcUrl() {
+        return this.plugin.getConfig().getString(path_pool_jdbc_url, "");
+    }
+
+    void setPoolJdbcUrl(@NotNull String v) {
+        this.plugin.getConfig().set(path_pool_jdbc_url, v);
+    }
+
+    long getPoolMaxWait() {
+        return this.plugin.getConfig().getLong(path_pool_max_wait, 5000);
+    }
+
+    void setPoolMaxWait(long v) {
+        this.plugin.getConfig().set(path_pool_max_wait, v);
+    }
+
+    long getPoolIdleTimeout() {
+        return this.plugin.getConfig().getLong(path_pool_idle_timeout, 10 * 60 * 1000L);
+    }
+
+    void setPoolIdleTimeout(long v) {
+        this.plugin.getConfig().set(path_pool_idle_timeout, v);
+    }
+
+    int getAsyncThreads() {
+        return this.plugin.getConfig().getInt(path_async_threads, 4);
+    }
+
+    void setAsyncThreads(int v) {
+        this.plugin.getConfig().set(path_async_threads, v);
+    }
+
+    int getAsyncQueueSize() {
+        return this.plugin.getConfig().getInt(path_async_queue_size, 1024);
+    }
+
+    void setAsyncQueueSize(int v) {
+        this.plugin.getConfig().set(path_async_queue_size, v);
+    }
+
+    // 允许的字符区间，十六进制码点，例如 4E00-9FA5
+    @NotNull List<String> getNameRanges() {
+        final List<String> list = this.plugin.getConfig().getStringList(path_name_ranges);
+        return list.isEmpty() ? NameValidator.DEFAULT_RANGES : list;
+    }
+
+    void setNameRanges(@NotNull List<String> v) {
+        this.plugin.getConfig().set(path_name_ranges, v);
+    }
+
+    int getNameMinLength() {
+        return this.plugin.getConfig().getInt(path_name_min_length, 2);
+    }
+
+    void setNameMinLength(int v) {
+        this.plugin.getConfig().set(path_name_min_length, v);
+    }
+
+    int getNameMaxLength() {
+        return this.plugin.getConfig().getInt(path_name_max_length, 4);
+    }
+
+    void setNameMaxLength(int v) {
+        this.plugin.getConfig().set(path_name_max_length, v);
+    }
+
+    // 执行时间超过这个值的SQL写入日志
+    long getSqlSlowMillis() {
+        return this.plugin.getConfig().getLong(path_sql_slow_millis, 200);
+    }
+
+    void setSqlSlowMillis(long v) {
+        this.plugin.getConfig().set(path_sql_slow_millis, v);
+    }
+
+    // 日志中的中文名只显示第一个字
+    boolean getSqlRedactParams() {
+        return this.plugin.getConfig().getBoolean(path_sql_redact_params, true);
+    }
+
+    void setSqlRedactParams(boolean v) {
+        this.plugin.getConfig().set(path_sql_redact_params, v);
+    }
+
+    // 保留最近一小时内最慢的SQL的数量
+    int getSqlTopSize() {
+        return this.plugin.getConfig().getInt(path_sql_top_size, 20);
+    }
+
+    void setSqlTopSize(int v) {
+        this.plugin.getConfig().set(path_sql_top_size, v);
+    }
+
+    // 延迟写入启用、禁用的间隔
+    long getWriteBehindInterval() {
+        return this.plugin.getConfig().getLong(path_write_behind_interval, 20);
+    }
+
+    void setWriteBehindInterval(long v) {
+        this.plugin.getConfig().set(path_write_behind_interval, v);
+    }
+
+    // 积累到这个数量时立即写入
+    int getWriteBehindMaxPending() {
+        return this.plugin.getConfig().getInt(path_write_behind_max_pending, 256);
+    }
+
+    void setWriteBehindMaxPending(int v) {
+        this.plugin.getConfig().set(path_write_behind_max_pending, v);
+    }
+
+    // 聊天等使用的显示名
+    boolean getRenderDisplayName() {
+        return this.plugin.getConfig().getBoolean(path_render_display_name, true);
+    }
+
+    void setRenderDisplayName(boolean v) {
+        this.plugin.getConfig().set(path_render_display_name, v);
+    }
+
+    // Tab列表中的名字
+    boolean getRenderListName() {
+        return this.plugin.getConfig().getBoolean(path_render_list_name, true);
+    }
+
+    void setRenderListName(boolean v) {
+        this.plugin.getConfig().set(path_render_list_name, v);
+    }
+
+    // 头顶的名字，会使用主计分板的队伍，Folia不支持
+    boolean getRenderNametag() {
+        return this.plugin.getConfig().getBoolean(path_render_nametag, false);
+    }
+
+    void setRenderNametag(boolean v) {
+        this.plugin.getConfig().set(path_render_nametag, v);
+    }
+
+    // 使用插件目录中的 lang/<语言>.yml
+    @NotNull String getMessagesLanguage() {
+        return this.plugin.getConfig().getString(path_messages_language, Messages.DEFAULT_LANGUAGE);
+    }
+
+    void setMessagesLanguage(@NotNull String v) {
+        this.plugin.getConfig().set(path_messages_language, v);
+    }
+
+    // import.sources.<名字>.url/user/password
+    @Nullable ImportSource getImportSource(@NotNull String name) {
+        final ConfigurationSection section = this.plugin.getConfig().getConfigurationSection(path_import_sources + "." + name);
+        if (section == null) return null;
+
+        final String url = section.getString("url", "");
+        if (url.isEmpty()) return null;
+
+        return new ImportSource(url, section.getString("user", ""), section.getString("password", ""));
+    }
+
+    @NotNull Set<String> getImportSourceNames() {
+        final ConfigurationSection section = this.plugin.getConfig().getConfigurationSection(path_import_sources);
+        if (section == null) return Set.of();
+        return section.getKeys(false);
+    }
+
     void setDefaults() {
         this.setCoinsForNormal(this.getCoinsForNormal());
         this.setCoinsForSpecial(this.getCoinsForSpecial());
+        this.setPoolSize(this.getPoolSize());
+        this.setPoolAddress(this.getPoolAddress());
+        this.setPoolUser(this.getPoolUser());
+        this.setPoolPassword(this.getPoolPassword());
+        this.setPoolJdbcUrl(this.getPoolJdbcUrl());
+        this.setPoolMaxWait(this.getPoolMaxWait());
+        this.setPoolIdleTimeout(this.getPoolIdleTimeout());
+        this.setAsyncThreads(this.getAsyncThreads());
+        this.setAsyncQueueSize(this.getAsyncQueueSize());
+        this.setNameRanges(this.getNameRanges());
+        this.setNameMinLength(this.getNameMinLength());
+        this.setNameMaxLength(this.getNameMaxLength());
+        this.setSqlSlowMillis(this.getSqlSlowMillis());
+        this.setSqlRedactParams(this.getSqlRedactParams());
+        this.setSqlTopSize(this.getSqlTopSize());
+        this.setWriteBehindInterval(this.getWriteBehindInterval());
+        this.setWriteBehindMaxPending(this.getWriteBehindMaxPending());
+        this.setRenderDisplayName(this.getRenderDisplayName());
+        this.setRenderListName(this.getRenderListName());
+        this.setRenderNametag(this.getRenderNametag());
+        this.setMessagesLanguage(this.getMessagesLanguage());
+        if (this.plugin.getConfig().getConfigurationSection(path_import_sources) == null)
+            this.plugin.getConfig().createSection(path_import_sources);
     }
 
     void save() {
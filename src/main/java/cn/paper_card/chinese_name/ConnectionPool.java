@@ -0,0 +1,153 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// 固定大小的连接池，每个连接有自己的表对象，多个线程可以同时查询
+class ConnectionPool implements SessionSource {
+
+    interface ConnectionFactory {
+        @NotNull Connection open() throws SQLException;
+    }
+
+    // 空闲超过这个时间的连接在借出前需要检查是否可用
+    private static final long VALIDATE_AFTER_MILLIS = 30 * 1000L;
+
+    private static final int VALIDATE_TIMEOUT_SECONDS = 2;
+
+    private final @NotNull ConnectionFactory factory;
+
+    private final int size;
+
+    private final long maxWaitMillis;
+
+    private final long idleTimeoutMillis;
+
+    private final @NotNull Semaphore permits;
+
+    // 最近使用的在队头，最久未使用的在队尾
+    private final @NotNull LinkedBlockingDeque<DbSession> idle = new LinkedBlockingDeque<>();
+
+    private volatile boolean closed = false;
+
+    ConnectionPool(@NotNull ConnectionFactory factory, int size, long maxWaitMillis, long idleTimeoutMillis) {
+        this.factory = factory;
+        this.size = size;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.permits = new Semaphore(size, true);
+    }
+
+    private static void closeQuietly(@NotNull DbSession session) {
+        try {
+            session.close();
+        } catch (SQLException ignored) {
+        }
+        try {
+            session.getConnection().close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static boolean isValid(@NotNull DbSession session) {
+        try {
+            return session.getConnection().isValid(VALIDATE_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    int getSize() {
+        return this.size;
+    }
+
+    int getIdleCount() {
+        return this.idle.size();
+    }
+
+    int getActiveCount() {
+        return this.size - this.permits.availablePermits();
+    }
+
+    @Override
+    public @NotNull DbSession acquire() throws SQLException {
+        if (this.closed) throw new SQLException("连接池已经关闭");
+
+        try {
+            if (!this.permits.tryAcquire(this.maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("等待数据库连接超时（%dms）".formatted(this.maxWaitMillis));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待数据库连接时被中断", e);
+        }
+
+        try {
+            DbSession session;
+            while ((session = this.idle.pollFirst()) != null) {
+                if (System.currentTimeMillis() - session.getLastUseTime() < VALIDATE_AFTER_MILLIS) return session;
+                if (isValid(session)) return session;
+                closeQuietly(session);
+            }
+
+            return new DbSession(this.factory.open());
+        } catch (SQLException | RuntimeException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void release(@NotNull DbSession session, @Nullable SQLException e) {
+        try {
+            if (this.closed) {
+                closeQuietly(session);
+                return;
+            }
+
+            // 出现异常后，只丢弃已经不可用的连接，约束冲突之类的异常不影响连接
+            if (e != null) {
+                final String state = e.getSQLState();
+                if ((state != null && state.startsWith("08")) || !isValid(session)) {
+                    closeQuietly(session);
+                    return;
+                }
+            }
+
+            session.setLastUseTime(System.currentTimeMillis());
+            this.idle.offerFirst(session);
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    // 关闭空闲太久的连接，应该定期调用
+    void evictIdle() {
+        final long now = System.currentTimeMillis();
+        final Iterator<DbSession> it = this.idle.descendingIterator();
+        while (it.hasNext()) {
+            final DbSession session = it.next();
+            if (now - session.getLastUseTime() < this.idleTimeoutMillis) break;
+            if (this.idle.removeLastOccurrence(session)) closeQuietly(session);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        this.closed = true;
+
+        DbSession session;
+        while ((session = this.idle.pollFirst()) != null) {
+            session.close();
+            session.getConnection().close();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.ApplicationInfo;
+import cn.paper_card.chinese_name.api.NameInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+
+// 导出中文名和申请，按主键分批读取，每批单独获取连接，不会长时间占用共享连接
+// 先写入临时文件，完成后再改名，内存占用和数据量无关
+class DataExporter {
+
+    enum Format {
+        NDJSON,
+        CSV;
+
+        static @Nullable Format of(@NotNull String s) {
+            for (final Format f : values()) {
+                if (f.name().equalsIgnoreCase(s)) return f;
+            }
+            return null;
+        }
+
+        @NotNull String extension() {
+            return this.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final @NotNull SessionSource source;
+
+    private final int batchSize;
+
+    DataExporter(@NotNull SessionSource source, int batchSize) {
+        this.source = source;
+        this.batchSize = batchSize;
+    }
+
+    // 返回导出的条数
+    long exportNames(@NotNull Path file, @NotNull Format format) throws SQLException, IOException {
+        final StringBuilder line = new StringBuilder(128);
+        long count = 0;
+
+        try (final ChannelWriter writer = new ChannelWriter(file)) {
+            if (format == Format.CSV) writer.write("uuid,name,time,enable\n");
+
+            NameInfo last = null;
+            while (true) {
+                final NameInfo after = last;
+                final List<NameInfo> list = this.source.execute(s -> s.getNameTable().queryPage(after == null ? null : after.uuid(), this.batchSize));
+
+                for (final NameInfo info : list) {
+                    line.setLength(0);
+                    if (format == Format.NDJSON) {
+                        line.append("{\"uuid\":\"").append(info.uuid()).append("\",\"name\":");
+                        appendJsonString(line, info.name());
+                        line.append(",\"time\":").append(info.time());
+                        line.append(",\"enable\":").append(info.enable()).append("}\n");
+                    } else {
+                        line.append(info.uuid()).append(',');
+                        appendCsv(line, info.name());
+                        line.append(',').append(info.time());
+                        line.append(',').append(info.enable()).append('\n');
+                    }
+                    writer.write(line);
+                }
+
+                count += list.size();
+                if (list.size() < this.batchSize) break;
+                last = list.get(list.size() - 1);
+            }
+
+            writer.commit();
+        }
+        return count;
+    }
+
+    long exportApplications(@NotNull Path file, @NotNull Format format) throws SQLException, IOException {
+        final StringBuilder line = new StringBuilder(128);
+        long count = 0;
+
+        try (final ChannelWriter writer = new ChannelWriter(file)) {
+            if (format == Format.CSV) writer.write("id,uuid,name,coins,time\n");
+
+            int lastId = Integer.MIN_VALUE;
+            while (true) {
+                final int after = lastId;
+                final List<ApplicationInfo> list = this.source.execute(s -> s.getApplicationTable().queryAfterId(after, this.batchSize));
+
+                for (final ApplicationInfo info : list) {
+                    line.setLength(0);
+                    if (format == Format.NDJSON) {
+                        line.append("{\"id\":").append(info.id());
+                        line.append(",\"uuid\":\"").append(info.uuid()).append("\",\"name\":");
+                        appendJsonString(line, info.name());
+                        line.append(",\"coins\":").append(info.coins());
+                        line.append(",\"time\":").append(info.time()).append("}\n");
+                    } else {
+                        line.append(info.id()).append(',').append(info.uuid()).append(',');
+                        appendCsv(line, info.name());
+                        line.append(',').append(info.coins());
+                        line.append(',').append(info.time()).append('\n');
+                    }
+                    writer.write(line);
+                }
+
+                count += list.size();
+                if (list.size() < this.batchSize) break;
+                lastId = list.get(list.size() - 1).id();
+            }
+
+            writer.commit();
+        }
+        return count;
+    }
+
+    private static void appendJsonString(@NotNull StringBuilder sb, @NotNull String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append("\\u%04x".formatted((int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    // 含有逗号、引号或者换行时加引号，导入的冲突报告也使用
+    static void appendCsv(@NotNull StringBuilder sb, @NotNull String s) {
+        boolean quote = false;
+        for (int i = 0; i < s.length(); ++i) {
+            final char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+                break;
+            }
+        }
+
+        if (!quote) {
+            sb.append(s);
+            return;
+        }
+
+        sb.append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            final char c = s.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    // 通过直接缓冲区写入FileChannel，UTF-8编码时不产生中间的byte[]
+    private static class ChannelWriter implements AutoCloseable {
+
+        private final @NotNull Path file;
+
+        private final @NotNull Path tmp;
+
+        private final @NotNull FileChannel channel;
+
+        private final @NotNull ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private final @NotNull CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+        private boolean committed = false;
+
+        ChannelWriter(@NotNull Path file) throws IOException {
+            this.file = file;
+            this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.channel = FileChannel.open(this.tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private void drain() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) this.channel.write(this.buffer);
+            this.buffer.clear();
+        }
+
+        // 每次写入完整的行，不会把代理对拆开
+        void write(@NotNull CharSequence cs) throws IOException {
+            final CharBuffer in = CharBuffer.wrap(cs);
+            while (true) {
+                final CoderResult result = this.encoder.encode(in, this.buffer, false);
+                if (result.isUnderflow()) break;
+                if (result.isOverflow()) {
+                    this.drain();
+                    continue;
+                }
+                result.throwException();
+            }
+        }
+
+        // 写入完成，替换目标文件
+        void commit() throws IOException {
+            final CharBuffer empty = CharBuffer.allocate(0);
+            CoderResult result;
+            while ((result = this.encoder.encode(empty, this.buffer, true)).isOverflow()) this.drain();
+            if (result.isError()) throw new CharacterCodingException();
+            while (this.encoder.flush(this.buffer).isOverflow()) this.drain();
+
+            this.drain();
+            this.channel.force(false);
+            this.channel.close();
+
+            Files.move(this.tmp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.committed) return;
+
+            // 没有完成，删除临时文件
+            this.channel.close();
+            Files.deleteIfExists(this.tmp);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// 一个数据库连接以及在该连接上缓存的表对象（预编译语句）
+class DbSession {
+
+    private final @NotNull Connection connection;
+
+    private ChineseNameTable nameTable = null;
+
+    private ApplicationTable applicationTable = null;
+
+    private Dialect dialect = null;
+
+    private long lastUseTime;
+
+    DbSession(@NotNull Connection connection) {
+        this.connection = connection;
+        this.lastUseTime = System.currentTimeMillis();
+    }
+
+    long getLastUseTime() {
+        return this.lastUseTime;
+    }
+
+    void setLastUseTime(long time) {
+        this.lastUseTime = time;
+    }
+
+    @NotNull Connection getConnection() {
+        return this.connection;
+    }
+
+    @NotNull Dialect getDialect() throws SQLException {
+        if (this.dialect == null) this.dialect = Dialect.of(this.connection);
+        return this.dialect;
+    }
+
+    @NotNull ChineseNameTable getNameTable() throws SQLException {
+        if (this.nameTable == null) this.nameTable = new ChineseNameTable(this.connection);
+        return this.nameTable;
+    }
+
+    @NotNull ApplicationTable getApplicationTable() throws SQLException {
+        if (this.applicationTable == null) this.applicationTable = new ApplicationTable(this.connection);
+        return this.applicationTable;
+    }
+
+    // 在一个事务中执行，出现异常时回滚
+    <R> R transaction(@NotNull SqlFunction<DbSession, R> function) throws SQLException {
+        final boolean autoCommit = this.connection.getAutoCommit();
+        if (autoCommit) this.connection.setAutoCommit(false);
+        try {
+            final R r = function.apply(this);
+            this.connection.commit();
+            return r;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                this.connection.rollback();
+            } catch (SQLException e2) {
+                e.addSuppressed(e2);
+            }
+            throw e;
+        } finally {
+            if (autoCommit) this.connection.setAutoCommit(true);
+        }
+    }
+
+    // 只关闭预编译语句，不关闭连接
+    void close() throws SQLException {
+        final ChineseNameTable t1 = this.nameTable;
+        final ApplicationTable t2 = this.applicationTable;
+        this.nameTable = null;
+        this.applicationTable = null;
+
+        SQLException exception = null;
+
+        if (t1 != null) {
+            try {
+                t1.close();
+            } catch (SQLException e) {
+                exception = e;
+            }
+        }
+
+        if (t2 != null) {
+            try {
+                t2.close();
+            } catch (SQLException e) {
+                if (exception == null) exception = e;
+                else exception.addSuppressed(e);
+            }
+        }
+
+        if (exception != null) throw exception;
+    }
+}
@@ -0,0 +1,52 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Locale;
+
+// 不同数据库之间SQL的差异
+enum Dialect {
+    MYSQL,
+    H2,
+    SQLITE,
+    OTHER;
+
+    static @NotNull Dialect of(@NotNull Connection connection) throws SQLException {
+        final String name = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        if (name.contains("mysql") || name.contains("mariadb")) return MYSQL;
+        if (name.contains("h2")) return H2;
+        if (name.contains("sqlite")) return SQLITE;
+        return OTHER;
+    }
+
+    // MySQL的在线DDL，执行期间不阻塞读写
+    @NotNull String onlineDdl(boolean alterTable) {
+        if (this != MYSQL) return "";
+        return alterTable ? ", ALGORITHM=INPLACE, LOCK=NONE" : " ALGORITHM=INPLACE LOCK=NONE";
+    }
+
+    // sqlite-jdbc不设置SQLState，只有错误码SQLITE_CONSTRAINT
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    // 违反唯一约束等完整性约束
+    boolean isConstraintViolation(@NotNull SQLException e) {
+        if (e instanceof SQLIntegrityConstraintViolationException) return true;
+
+        final String state = e.getSQLState();
+        if (state != null) return state.startsWith("23");
+
+        if (this == SQLITE && e.getErrorCode() == SQLITE_CONSTRAINT) return true;
+
+        // 批量执行时原来的异常可能在nextException或者cause中
+        if (e instanceof BatchUpdateException) {
+            final SQLException next = e.getNextException();
+            if (next != null && next != e && this.isConstraintViolation(next)) return true;
+            return e.getCause() instanceof SQLException cause && cause != e && this.isConstraintViolation(cause);
+        }
+        return false;
+    }
+}
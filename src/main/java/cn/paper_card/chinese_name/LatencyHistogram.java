@@ -0,0 +1,88 @@
+package cn.paper_card.chinese_name;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// 对数线性分桶的延迟直方图（类似HdrHistogram），单位纳秒
+// 每个2的幂区间分为8个桶，相对误差不超过12.5%，记录时不加锁也不分配对象
+class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    // 最大约2^40纳秒（18分钟），更大的值记录在最后一个桶
+    private static final int MAX_SHIFT = 40 - SUB_BITS;
+
+    private static final int BUCKETS = (MAX_SHIFT + 2) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) return (int) Math.max(value, 0);
+
+        final int msb = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = msb - SUB_BITS;
+        if (shift > MAX_SHIFT) return BUCKETS - 1;
+
+        final int sub = (int) (value >>> shift) & (SUB_COUNT - 1);
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    // 桶的上界（包含）
+    private static long upperBoundOf(int index) {
+        if (index < SUB_COUNT) return index;
+        final int shift = index / SUB_COUNT - 1;
+        final int sub = index % SUB_COUNT;
+        return ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+    }
+
+    void record(long nanos) {
+        this.buckets.incrementAndGet(indexOf(nanos));
+        this.count.increment();
+        this.sum.add(nanos);
+        this.max.accumulate(nanos);
+    }
+
+    long getCount() {
+        return this.count.sum();
+    }
+
+    long getMax() {
+        return this.max.get();
+    }
+
+    long getMean() {
+        final long c = this.count.sum();
+        return c == 0 ? 0 : this.sum.sum() / c;
+    }
+
+    // p: 0~100，返回所在桶的上界，不超过最大值
+    long getPercentile(double p) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) total += this.buckets.get(i);
+        if (total == 0) return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(total * p / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) return Math.min(upperBoundOf(i), this.getMax());
+        }
+        return this.getMax();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; ++i) this.buckets.set(i, 0);
+        this.count.reset();
+        this.sum.reset();
+        this.max.reset();
+    }
+}
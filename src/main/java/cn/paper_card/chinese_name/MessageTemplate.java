@@ -0,0 +1,89 @@
+package cn.paper_card.chinese_name;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.ComponentLike;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+// 加载时用MiniMessage解析一次的消息模板
+// 占位符<xxx>在解析时替换为单独的标记文本，发送时只遍历组件树替换这些标记，不再重新解析
+// 参数作为Component插入，不会被当作MiniMessage标签解析
+// 悬浮文本中的占位符不会被替换
+class MessageTemplate {
+
+    // Unicode私有区字符，正常的消息中不会出现
+    private static final char MARKER = '\uE000';
+
+    // 不合并相邻的文本，保证每个标记是单独的组件
+    private static final MiniMessage MINI_MESSAGE = MiniMessage.builder()
+            .postProcessor(UnaryOperator.identity())
+            .build();
+
+    private final @NotNull Component component;
+
+    private final int slots;
+
+    private MessageTemplate(@NotNull Component component, int slots) {
+        this.component = component;
+        this.slots = slots;
+    }
+
+    // shared: 所有模板都可以使用的标签，例如<prefix>
+    static @NotNull MessageTemplate compile(@NotNull String text, @NotNull TagResolver shared, @NotNull String... slots) {
+        final List<TagResolver> resolvers = new ArrayList<>(slots.length + 1);
+        resolvers.add(shared);
+        for (int i = 0; i < slots.length; ++i) {
+            final String marker = String.valueOf(new char[]{MARKER, (char) (MARKER + 1 + i)});
+            resolvers.add(TagResolver.resolver(slots[i], Tag.selfClosingInserting(Component.text(marker))));
+        }
+        return new MessageTemplate(MINI_MESSAGE.deserialize(text, TagResolver.resolver(resolvers)), slots.length);
+    }
+
+    private int slotOf(@NotNull Component c) {
+        if (!(c instanceof final TextComponent t)) return -1;
+        final String content = t.content();
+        if (content.length() != 2 || content.charAt(0) != MARKER) return -1;
+        final int i = content.charAt(1) - MARKER - 1;
+        return i >= 0 && i < this.slots ? i : -1;
+    }
+
+    // 只重新创建包含标记的分支，其它组件直接复用
+    private @NotNull Component fill(@NotNull Component c, @NotNull Component[] args) {
+        final int slot = this.slotOf(c);
+        if (slot >= 0) return args[slot].applyFallbackStyle(c.style());
+
+        final List<Component> children = c.children();
+        List<Component> filled = null;
+        for (int i = 0; i < children.size(); ++i) {
+            final Component child = children.get(i);
+            final Component f = this.fill(child, args);
+            if (filled == null && f != child) filled = new ArrayList<>(children.subList(0, i));
+            if (filled != null) filled.add(f);
+        }
+        return filled != null ? c.children(filled) : c;
+    }
+
+    private static @NotNull Component toComponent(@NotNull Object arg) {
+        if (arg instanceof final ComponentLike c) return c.asComponent();
+        return Component.text(String.valueOf(arg));
+    }
+
+    // 参数按定义占位符的顺序，可以是Component或者任意对象（使用toString）
+    @NotNull Component render(@NotNull Object... args) {
+        if (args.length != this.slots) {
+            throw new IllegalArgumentException("需要%d个参数，提供了%d个".formatted(this.slots, args.length));
+        }
+        if (this.slots == 0) return this.component;
+
+        final Component[] components = new Component[args.length];
+        for (int i = 0; i < args.length; ++i) components[i] = toComponent(args[i]);
+        return this.fill(this.component, components);
+    }
+}
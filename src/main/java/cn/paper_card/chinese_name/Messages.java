@@ -0,0 +1,110 @@
+package cn.paper_card.chinese_name;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+
+// 从语言文件 lang/<语言>.yml 加载的消息，每条消息在加载时解析为模板
+// 语言文件中没有的消息使用插件自带的默认语言文件
+// 加载后不再修改，重载时整体替换
+class Messages {
+
+    static final @NotNull String DEFAULT_LANGUAGE = "zh_cn";
+
+    enum Key {
+        PREFIX("prefix"),
+        INFO("info", "message"),
+        WARNING("warning", "message"),
+        ERROR("error", "message"),
+        MESSAGE("message", "message"),
+        EXCEPTION_HEADER("exception.header"),
+        EXCEPTION_CAUSE("exception.cause", "cause"),
+        SET_NOTIFY("set.notify", "admin", "name"),
+        ACCEPT_BROADCAST("accept.broadcast", "admin", "name"),
+        REJECT_RESULT("reject.result", "player", "name"),
+        REJECT_RESULT_REFUND("reject.result-refund", "player", "name", "coins", "coins-name", "left"),
+        REJECT_BROADCAST("reject.broadcast", "admin", "name"),
+        TOGGLE_SUCCESS("toggle.success", "coins", "coins-name", "left", "name", "status"),
+        TOGGLE_ENABLED("toggle.enabled"),
+        TOGGLE_DISABLED("toggle.disabled"),
+        OP_JOIN_PENDING("op-join.pending", "count");
+
+        private final @NotNull String path;
+
+        private final @NotNull String[] slots;
+
+        Key(@NotNull String path, @NotNull String... slots) {
+            this.path = path;
+            this.slots = slots;
+        }
+    }
+
+    private final @NotNull EnumMap<Key, MessageTemplate> templates;
+
+    private final @NotNull Component prefix;
+
+    private Messages(@NotNull YamlConfiguration config) {
+        this.templates = new EnumMap<>(Key.class);
+
+        final MessageTemplate prefixTemplate = MessageTemplate.compile(getString(config, Key.PREFIX), TagResolver.empty());
+        this.templates.put(Key.PREFIX, prefixTemplate);
+        this.prefix = prefixTemplate.render();
+
+        // 前缀在解析时直接插入，发送时不需要再处理
+        final TagResolver shared = TagResolver.resolver("prefix", Tag.selfClosingInserting(this.prefix));
+        for (final Key key : Key.values()) {
+            if (key == Key.PREFIX) continue;
+            this.templates.put(key, MessageTemplate.compile(getString(config, key), shared, key.slots));
+        }
+    }
+
+    private static @NotNull String getString(@NotNull YamlConfiguration config, @NotNull Key key) {
+        final String s = config.getString(key.path);
+        return s != null ? s : key.path;
+    }
+
+    private static @Nullable YamlConfiguration loadResource(@NotNull ThePlugin plugin, @NotNull String path) {
+        final InputStream in = plugin.getResource(path);
+        if (in == null) return null;
+        return YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    static @NotNull Messages load(@NotNull ThePlugin plugin, @NotNull String language) {
+        final String path = "lang/" + language + ".yml";
+        final File file = new File(plugin.getDataFolder(), path);
+
+        // 第一次使用时复制插件自带的语言文件，方便修改
+        if (!file.exists() && plugin.getResource(path) != null) plugin.saveResource(path, false);
+
+        final YamlConfiguration config;
+        if (file.exists()) {
+            config = YamlConfiguration.loadConfiguration(file);
+        } else {
+            plugin.getSLF4JLogger().warn("语言文件%s不存在，使用默认语言".formatted(path));
+            config = new YamlConfiguration();
+        }
+
+        final YamlConfiguration defaults = loadResource(plugin, "lang/" + DEFAULT_LANGUAGE + ".yml");
+        if (defaults != null) config.setDefaults(defaults);
+
+        return new Messages(config);
+    }
+
+    @NotNull Component prefix() {
+        return this.prefix;
+    }
+
+    // 参数按Key中定义的占位符顺序
+    @NotNull Component render(@NotNull Key key, @NotNull Object... args) {
+        return this.templates.get(key).render(args);
+    }
+}
@@ -8,6 +8,7 @@ import cn.paper_card.chinese_name.api.exception.NameRegisteredException;
 import cn.paper_card.mc_command.TheMcCommand;
 import cn.paper_card.player_coins.api.NotEnoughCoinsException;
 import cn.paper_card.player_coins.api.PlayerCoinsApi;
+import jdk.jfr.EventType;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
 import net.kyori.adventure.text.event.ClickEvent;
@@ -23,9 +24,16 @@ import org.bukkit.permissions.Permission;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.BooleanSupplier;
 
 class MyCommand extends TheMcCommand.HasSub {
 
@@ -37,6 +45,16 @@ class MyCommand extends TheMcCommand.HasSub {
 
     private final @NotNull AppList appListCmd;
 
+    private final @NotNull Set setCmd;
+
+    // 补全玩家名时最多返回的数量
+    private static final int MAX_COMPLETIONS = 50;
+
+    private static final EventType COMMAND_EVENT = EventType.getEventType(CommandEvent.class);
+
+    // 正在记录CommandEvent的子命令是否已经失败，没有在记录时为null
+    private static final ThreadLocal<boolean[]> FAILED = new ThreadLocal<>();
+
     MyCommand(@NotNull ThePlugin plugin) {
         super("ch-name");
         this.plugin = plugin;
@@ -58,13 +76,18 @@ class MyCommand extends TheMcCommand.HasSub {
         this.addSubCommand(this.appListCmd);
 
         this.addSubCommand(new Cancel());
-        this.addSubCommand(new Set());
+        this.setCmd = new Set();
+        this.addSubCommand(this.setCmd);
         this.addSubCommand(new App());
         this.addSubCommand(new AppAny());
         this.addSubCommand(new UseOnOff(true));
         this.addSubCommand(new UseOnOff(false));
         this.addSubCommand(new Help());
         this.addSubCommand(new Reload());
+        this.addSubCommand(new Import());
+        this.addSubCommand(new Export());
+        this.addSubCommand(new Stats());
+        this.addSubCommand(new Slow());
     }
 
     boolean canHandleApp(@NotNull CommandSender sender) {
@@ -78,19 +101,111 @@ class MyCommand extends TheMcCommand.HasSub {
         return !commandSender.hasPermission(this.permission);
     }
 
+    // 在异步线程中补全 /ch-name set <玩家名>
+    // 返回null表示不处理，交给主线程的补全
+    @Nullable List<String> completeAsync(@NotNull CommandSender sender, @NotNull String buffer) {
+        final String[] args = (buffer.startsWith("/") ? buffer.substring(1) : buffer).split(" ", -1);
+        if (args.length != 3) return null;
+
+        String label = args[0];
+        final int colon = label.indexOf(':');
+        if (colon >= 0) label = label.substring(colon + 1);
+
+        if (!label.equalsIgnoreCase(this.getLabel())) return null;
+        if (!args[1].equalsIgnoreCase(this.setCmd.getLabel())) return null;
+
+        final PlayerNameIndex index = plugin.getPlayerNameIndex();
+        if (index == null || !index.isReady()) return null;
+
+        if (this.canNotExecute(sender) || this.setCmd.canNotExecute(sender)) return null;
+
+        return this.setCmd.completePlayer(args[2]);
+    }
+
+    // 开启JFR记录时为每个子命令产生CommandEvent
+    @Override
+    public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+        if (!COMMAND_EVENT.isEnabled()) return super.onCommand(commandSender, command, s, strings);
+
+        final String name = "/%s %s".formatted(this.getLabel(), strings.length > 0 ? strings[0] : "");
+        return runWithEvent(name, commandSender, false, () -> super.onCommand(commandSender, command, s, strings));
+    }
+
+    // 子命令捕获异常后通过handleException、sendException报告，不会抛出，在这里记录为失败
+    static void markFailed() {
+        final boolean[] failed = FAILED.get();
+        if (failed != null) failed[0] = true;
+    }
+
+    private static boolean runWithEvent(@NotNull String name, @NotNull CommandSender sender, boolean async, @NotNull BooleanSupplier task) {
+        final CommandEvent event = new CommandEvent();
+        final boolean[] failed = {false};
+        final boolean[] outer = FAILED.get();
+        FAILED.set(failed);
+        event.begin();
+        String outcome = "ERROR";
+        try {
+            final boolean ret = task.getAsBoolean();
+            outcome = failed[0] ? "FAILED" : "OK";
+            return ret;
+        } finally {
+            if (outer == null) FAILED.remove();
+            else FAILED.set(outer);
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = name;
+                event.sender = sender.getName();
+                event.async = async;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    // 异步执行子命令，期间执行的SQL记录为这个子命令调用的
+    private void runAsync(@NotNull TheMcCommand sub, @NotNull CommandSender sender, @NotNull Runnable task) {
+        final String caller = "/%s %s".formatted(this.getLabel(), sub.getLabel());
+        plugin.getTaskScheduler().runTaskAsynchronously(() -> SqlTracer.runWithCaller(caller, () -> {
+            if (!COMMAND_EVENT.isEnabled()) {
+                task.run();
+                return;
+            }
+            runWithEvent(caller, sender, true, () -> {
+                task.run();
+                return true;
+            });
+        }));
+    }
+
     private @Nullable UUID parseArgPlayer(@NotNull String argPlayer) {
         try {
             return UUID.fromString(argPlayer);
         } catch (IllegalArgumentException ignored) {
         }
 
+        final PlayerNameIndex index = plugin.getPlayerNameIndex();
+        if (index != null && index.isReady()) return index.getUuid(argPlayer);
+
+        // 索引还没有构建完成
         for (final OfflinePlayer offlinePlayer : plugin.getServer().getOfflinePlayers()) {
             final String name = offlinePlayer.getName();
-            if (argPlayer.equals(name)) return offlinePlayer.getUniqueId();
+            if (argPlayer.equalsIgnoreCase(name)) return offlinePlayer.getUniqueId();
         }
         return null;
     }
 
+    // 找不到玩家名时使用UUID
+    private @NotNull String getPlayerName(@NotNull UUID uuid) {
+        final PlayerNameIndex index = plugin.getPlayerNameIndex();
+        if (index != null) {
+            final String name = index.getName(uuid);
+            if (name != null) return name;
+        }
+
+        final String name = plugin.getServer().getOfflinePlayer(uuid).getName();
+        return name != null ? name : uuid.toString();
+    }
+
     class Set extends TheMcCommand {
 
         private final @NotNull Permission permission;
@@ -128,7 +243,7 @@ class MyCommand extends TheMcCommand.HasSub {
                 return true;
             }
 
-            plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+            runAsync(this, commandSender, () -> {
                 final ChineseNameApiImpl api = plugin.getChineseNameApi();
 
                 if (api == null) {
@@ -153,48 +268,49 @@ class MyCommand extends TheMcCommand.HasSub {
                     return;
                 }
 
-                final OfflinePlayer offlinePlayer = plugin.getServer().getOfflinePlayer(uuid);
-                String playerName = offlinePlayer.getName();
-                if (playerName == null) playerName = offlinePlayer.getUniqueId().toString();
+                final String playerName = getPlayerName(uuid);
 
                 plugin.sendInfo(commandSender, "%s成功，已将玩家 [%s] 的中文名设置为: %s".formatted(
                         added ? "添加" : "更新", playerName, argNewName
                 ));
 
                 // 如果玩家在线通知玩家
-                final Player player = offlinePlayer.getPlayer();
+                final Player player = plugin.getServer().getPlayer(uuid);
                 if (player != null && player.isOnline()) {
-                    final TextComponent.Builder append = Component.text()
-                            .append(Component.text("管理员 [").color(NamedTextColor.GREEN))
-                            .append(Component.text(commandSender.getName()).color(NamedTextColor.DARK_RED))
-                            .append(Component.text("] 已将你的中文名设置为：[").color(NamedTextColor.GREEN))
-                            .append(Component.text(argNewName).color(NamedTextColor.LIGHT_PURPLE))
-                            .append(Component.text("]，下次连接服务器就生效啦~").color(NamedTextColor.GREEN));
-
-                    plugin.sendInfo(player, append.build());
+                    player.sendMessage(plugin.getMessages().render(Messages.Key.SET_NOTIFY,
+                            commandSender.getName(), argNewName));
                 }
             });
 
             return true;
         }
 
-        @Override
-        public @Nullable List<String> onTabComplete(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
-            if (strings.length == 1) {
-                final String argPlayer = strings[0];
-                final LinkedList<String> list = new LinkedList<>();
-
-                if (argPlayer.isEmpty()) list.add("<玩家名或UUID>");
+        @NotNull List<String> completePlayer(@NotNull String argPlayer) {
+            final ArrayList<String> list = new ArrayList<>();
 
-                for (final OfflinePlayer offlinePlayer : plugin.getServer().getOfflinePlayers()) {
-                    final String name = offlinePlayer.getName();
-                    if (name == null) continue;
-                    if (name.startsWith(argPlayer)) list.add(name);
-                }
+            if (argPlayer.isEmpty()) list.add("<玩家名或UUID>");
 
+            final PlayerNameIndex index = plugin.getPlayerNameIndex();
+            if (index != null && index.isReady()) {
+                list.addAll(index.complete(argPlayer, MAX_COMPLETIONS));
                 return list;
             }
 
+            // 索引还没有构建完成
+            for (final OfflinePlayer offlinePlayer : plugin.getServer().getOfflinePlayers()) {
+                if (list.size() >= MAX_COMPLETIONS) break;
+                final String name = offlinePlayer.getName();
+                if (name == null) continue;
+                if (name.regionMatches(true, 0, argPlayer, 0, argPlayer.length())) list.add(name);
+            }
+
+            return list;
+        }
+
+        @Override
+        public @Nullable List<String> onTabComplete(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+            if (strings.length == 1) return this.completePlayer(strings[0]);
+
             if (strings.length == 2) {
                 final String argNewName = strings[1];
                 final LinkedList<String> list = new LinkedList<>();
@@ -225,8 +341,10 @@ class MyCommand extends TheMcCommand.HasSub {
         @Override
         public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
 
+            // app-list [页码] [after|before <time> <id>]
             final int pageSize = 4;
             final String argPage = strings.length > 0 ? strings[0] : null;
+            final String argDirection = strings.length > 1 ? strings[1] : null;
 
             final int pageNo;
             if (argPage == null) {
@@ -240,7 +358,24 @@ class MyCommand extends TheMcCommand.HasSub {
                 }
             }
 
-            plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+            final boolean before = "before".equals(argDirection);
+            final ApplicationServiceImpl.Cursor cursor;
+            if (argDirection == null) {
+                cursor = null;
+            } else {
+                if ((!before && !"after".equals(argDirection)) || strings.length < 4) {
+                    plugin.sendError(commandSender, "不正确的分页参数");
+                    return true;
+                }
+                try {
+                    cursor = new ApplicationServiceImpl.Cursor(Long.parseLong(strings[2]), Integer.parseInt(strings[3]));
+                } catch (NumberFormatException e) {
+                    plugin.sendError(commandSender, "不正确的分页参数");
+                    return true;
+                }
+            }
+
+            runAsync(this, commandSender, () -> {
                 final ChineseNameApiImpl api = plugin.getChineseNameApi();
                 if (api == null) {
                     plugin.sendError(commandSender, "ChineseNameApiImpl is null!");
@@ -259,7 +394,15 @@ class MyCommand extends TheMcCommand.HasSub {
                 final List<ApplicationInfo> list;
 
                 try {
-                    list = api.getApplicationService().queryWithPage(pageSize, (pageNo - 1) * pageSize);
+                    final ApplicationServiceImpl service = api.getApplicationService();
+                    if (cursor == null && pageNo > 1) {
+                        // 只提供页码时按偏移量查询
+                        list = service.queryWithPage(pageSize, (pageNo - 1) * pageSize);
+                    } else if (before) {
+                        list = service.queryBefore(cursor, pageSize);
+                    } else {
+                        list = service.queryAfter(cursor, pageSize);
+                    }
                 } catch (SQLException e) {
                     plugin.handleException("app-list command -> application service -> query with page", e);
                     plugin.sendException(commandSender, e);
@@ -298,10 +441,7 @@ class MyCommand extends TheMcCommand.HasSub {
 
                         // oldName
                         builder.append(Component.text(" | "));
-                        final OfflinePlayer offlinePlayer = plugin.getServer().getOfflinePlayer(info.uuid());
-                        String name = offlinePlayer.getName();
-                        if (name == null) name = offlinePlayer.getUniqueId().toString();
-                        builder.append(Component.text(name));
+                        builder.append(Component.text(getPlayerName(info.uuid())));
 
                         // coins
                         builder.append(Component.text(" | "));
@@ -332,19 +472,23 @@ class MyCommand extends TheMcCommand.HasSub {
                     }
                 }
 
-                final boolean noNext = size < pageSize;
-                final boolean hasPre = pageNo > 1;
+                // 使用当前页第一条和最后一条作为游标，翻页期间有申请被处理也不会错位
+                final ApplicationServiceImpl.Cursor preCursor = size > 0 ? ApplicationServiceImpl.Cursor.of(list.get(0)) : (before ? null : cursor);
+                final ApplicationServiceImpl.Cursor nextCursor = size > 0 ? ApplicationServiceImpl.Cursor.of(list.get(size - 1)) : (before ? cursor : null);
+
+                final boolean noNext = (size < pageSize && !before) || nextCursor == null;
+                final boolean hasPre = pageNo > 1 && preCursor != null;
 
                 builder.appendNewline();
                 builder.append(Component.text("[上一页]")
                         .color(NamedTextColor.GRAY).decorate(TextDecoration.UNDERLINED)
-                        .clickEvent(hasPre ? ClickEvent.runCommand("/ch-name app-list %d".formatted(pageNo - 1)) : null)
+                        .clickEvent(hasPre ? ClickEvent.runCommand("/ch-name app-list %d before %d %d".formatted(pageNo - 1, preCursor.time(), preCursor.id())) : null)
                         .hoverEvent(HoverEvent.showText(Component.text(hasPre ? "点击上一页" : "没有上一页啦")))
                 );
                 builder.appendSpace();
                 builder.append(Component.text("[下一页]")
                         .color(NamedTextColor.GRAY).decorate(TextDecoration.UNDERLINED)
-                        .clickEvent(noNext ? null : ClickEvent.runCommand("/ch-name app-list %d".formatted(pageNo + 1)))
+                        .clickEvent(noNext ? null : ClickEvent.runCommand("/ch-name app-list %d after %d %d".formatted(pageNo + 1, nextCursor.time(), nextCursor.id())))
                         .hoverEvent(HoverEvent.showText(Component.text(noNext ? "没有下一页啦" : "点击下一页")))
                 );
 
@@ -393,7 +537,7 @@ class MyCommand extends TheMcCommand.HasSub {
                 return true;
             }
 
-            plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+            runAsync(this, commandSender, () -> {
                 final ApplicationInfo info;
 
                 final ChineseNameApiImpl api = plugin.getChineseNameApi();
@@ -435,9 +579,7 @@ class MyCommand extends TheMcCommand.HasSub {
                     return;
                 }
 
-                final OfflinePlayer offlinePlayer = plugin.getServer().getOfflinePlayer(info.uuid());
-                String name = offlinePlayer.getName();
-                if (name == null) name = offlinePlayer.getUniqueId().toString();
+                final String name = getPlayerName(info.uuid());
 
                 plugin.sendInfo(commandSender, "%s了玩家%s的中文名: %s".formatted(
                         added ? "添加" : "更新",
@@ -445,23 +587,8 @@ class MyCommand extends TheMcCommand.HasSub {
                 ));
 
                 // 广播
-                final TextComponent.Builder text = Component.text();
-                plugin.appendPrefix(text);
-                text.appendSpace();
-                text
-                        .append(Component.text("管理员 ["))
-                        .append(Component.text(commandSender.getName()).color(NamedTextColor.DARK_RED))
-                        .append(Component.text("] 已同意中文名申请 ["))
-                        .append(Component.text(info.name()).color(NamedTextColor.LIGHT_PURPLE))
-                        .append(Component.text("]，下次连接服务器就生效啦~"))
-                        .appendSpace()
-                        .append(Component.text("[我也要申请]")
-                                .color(NamedTextColor.GRAY).decorate(TextDecoration.UNDERLINED)
-                                .hoverEvent(HoverEvent.showText(Component.text("点击申请")))
-                                .clickEvent(ClickEvent.runCommand("/ch-name help"))
-                        );
-
-                plugin.getServer().broadcast(text.build().color(NamedTextColor.GREEN));
+                plugin.getServer().broadcast(plugin.getMessages().render(Messages.Key.ACCEPT_BROADCAST,
+                        commandSender.getName(), info.name()));
             });
 
             return true;
@@ -514,7 +641,7 @@ class MyCommand extends TheMcCommand.HasSub {
             }
 
 
-            plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+            runAsync(this, commandSender, () -> {
                 final ChineseNameApiImpl chineseNameApi = plugin.getChineseNameApi();
                 if (chineseNameApi == null) {
                     plugin.sendError(commandSender, "ChineseNameApiImpl is null!");
@@ -545,18 +672,11 @@ class MyCommand extends TheMcCommand.HasSub {
                     return;
                 }
 
-                final OfflinePlayer offlinePlayer = plugin.getServer().getOfflinePlayer(info.uuid());
-                String name = offlinePlayer.getName();
-                if (name == null) name = offlinePlayer.getUniqueId().toString();
+                final String name = getPlayerName(info.uuid());
 
 
-                final TextComponent.Builder text = Component.text();
-                plugin.appendPrefix(text);
-                text.appendSpace();
-                text.append(Component.text("拒绝了玩家 "));
-                text.append(Component.text(name).color(NamedTextColor.AQUA));
-                text.append(Component.text(" 的中文名申请："));
-                text.append(Component.text(info.name()).color(NamedTextColor.AQUA));
+                final Messages messages = plugin.getMessages();
+                final Component text;
 
                 // 返还电池
                 final long coins = info.coins();
@@ -582,29 +702,17 @@ class MyCommand extends TheMcCommand.HasSub {
 
                         return;
                     }
-                    text.append(Component.text("，已返还"));
-                    text.append(MyUtil.coinsNumber(coins));
-                    text.append(Component.text(coinsName));
-                    text.append(Component.text("，剩余"));
-                    text.append(MyUtil.coinsNumber(leftCoins));
-                    text.append(Component.text(coinsName));
+                    text = messages.render(Messages.Key.REJECT_RESULT_REFUND, name, info.name(),
+                            MyUtil.coinsNumber(coins), coinsName, MyUtil.coinsNumber(leftCoins));
+                } else {
+                    text = messages.render(Messages.Key.REJECT_RESULT, name, info.name());
                 }
 
-                commandSender.sendMessage(text.build().color(NamedTextColor.GREEN));
+                commandSender.sendMessage(text);
 
                 // 广播
-                final TextComponent.Builder append = Component.text();
-                plugin.appendPrefix(append);
-                append.appendSpace();
-
-                append
-                        .append(Component.text("管理员 "))
-                        .append(Component.text(commandSender.getName()).color(NamedTextColor.DARK_RED))
-                        .append(Component.text(" 拒绝了中文名申请 "))
-                        .append(Component.text(info.name()).color(NamedTextColor.LIGHT_PURPLE))
-                        .append(Component.text("，可以换个别的名字重新申请~"));
-
-                plugin.getServer().broadcast(append.build().color(NamedTextColor.GREEN));
+                plugin.getServer().broadcast(messages.render(Messages.Key.REJECT_BROADCAST,
+                        commandSender.getName(), info.name()));
             });
 
 
@@ -658,7 +766,7 @@ class MyCommand extends TheMcCommand.HasSub {
             }
 
 
-            plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+            runAsync(this, commandSender, () -> {
                 final ChineseNameApiImpl chineseNameApi = plugin.getChineseNameApi();
                 if (chineseNameApi == null) {
                     plugin.sendError(commandSender, "ChineseNameApiImpl is null!");
@@ -848,7 +956,7 @@ class MyCommand extends TheMcCommand.HasSub {
                 }
             }
 
-            plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+            runAsync(this, commandSender, () -> {
                 final ChineseNameApiImpl chineseNameApi = plugin.getChineseNameApi();
                 if (chineseNameApi == null) {
                     plugin.sendError(commandSender, "ChineseNameApiImpl is null!");
@@ -1005,7 +1113,7 @@ class MyCommand extends TheMcCommand.HasSub {
             }
 
 
-            plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+            runAsync(this, commandSender, () -> {
                 final PlayerCoinsApi coinsApi = plugin.getPlayerCoinsApi();
                 final ChineseNameApiImpl chineseNameApi = plugin.getChineseNameApi();
 
@@ -1104,7 +1212,7 @@ class MyCommand extends TheMcCommand.HasSub {
                 return true;
             }
 
-            plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+            runAsync(this, commandSender, () -> {
                 final ChineseNameApiImpl chineseNameApi = plugin.getChineseNameApi();
                 if (chineseNameApi == null) {
                     plugin.sendError(commandSender, "ChineseNameApiImpl is null!");
@@ -1143,7 +1251,7 @@ class MyCommand extends TheMcCommand.HasSub {
                 final long coins = 1;
                 final long leftCoins;
                 try {
-                    leftCoins = api.consumeCoins(player.getUniqueId(), 1, "%s中文名：%s".formatted(
+                    leftCoins = api.consumeCoins(player.getUniqueId(), coins, "%s中文名：%s".formatted(
                             this.isOn ? "启用" : "禁用", nameInfo.name()
                     ));
                 } catch (Exception e) {
@@ -1152,40 +1260,32 @@ class MyCommand extends TheMcCommand.HasSub {
                     return;
                 }
 
-                final NameInfo newInfo = new NameInfo(
-                        player.getUniqueId(),
-                        nameInfo.name(),
-                        System.currentTimeMillis(),
-                        this.isOn
-                );
-
-                final boolean added;
-
-
+                // 启用、禁用不需要立即写入数据库
+                final boolean changed;
                 try {
-                    added = plugin.getChineseNameApi().getNameService().addOrUpdateByUuid(newInfo);
-                } catch (SQLException | NameRegisteredException e) {
-                    plugin.handleException("use-on-off command -> name service -> add or update by uuid", e);
+                    changed = chineseNameApi.getNameService().toggleEnable(player.getUniqueId(), this.isOn);
+                } catch (SQLException e) {
+                    plugin.handleException("use-on-off command -> name service -> toggle enable", e);
                     plugin.sendException(commandSender, e);
                     return;
                 }
 
-                final TextComponent.Builder text = Component.text();
-                plugin.appendPrefix(text);
-                text.appendSpace();
-                text.append(Component.text(added ? "添加" : "更新"));
-                text.append(Component.text("成功，已花费"));
-                text.append(MyUtil.coinsNumber(coins));
-                text.append(Component.text(api.getCoinsName()));
-                text.append(Component.text("（剩余"));
-                text.append(MyUtil.coinsNumber(leftCoins));
-                text.append(Component.text("）"));
-                text.append(Component.text("将您的中文名 "));
-                text.append(Component.text(newInfo.name()).color(NamedTextColor.AQUA));
-                text.append(Component.text(" 设置为："));
-                text.append(Component.text(newInfo.enable() ? "启用" : "禁用").color(NamedTextColor.LIGHT_PURPLE));
-                text.append(Component.text("，重新连接服务器生效~"));
-                commandSender.sendMessage(text.build().color(NamedTextColor.GREEN));
+                // 期间已经被其它命令修改，退还
+                if (!changed) {
+                    try {
+                        api.addCoins(player.getUniqueId(), coins, "中文名状态没有改变，返还");
+                    } catch (Exception e) {
+                        plugin.handleException("use-on-off command -> player coins api -> add coins", e);
+                    }
+                    final String status = this.isOn ? "启用" : "禁用";
+                    plugin.sendWarning(commandSender, "你的中文名已经是 [" + status + "] 状态");
+                    return;
+                }
+
+                final Messages messages = plugin.getMessages();
+                final Component status = messages.render(this.isOn ? Messages.Key.TOGGLE_ENABLED : Messages.Key.TOGGLE_DISABLED);
+                commandSender.sendMessage(messages.render(Messages.Key.TOGGLE_SUCCESS, MyUtil.coinsNumber(coins),
+                        api.getCoinsName(), MyUtil.coinsNumber(leftCoins), nameInfo.name(), status));
             });
 
             return true;
@@ -1251,6 +1351,10 @@ class MyCommand extends TheMcCommand.HasSub {
         public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
 
             plugin.getConfigManager().reload();
+            plugin.applyNameValidator();
+            plugin.applySqlTracer();
+            plugin.applyNameRenderer();
+            plugin.applyMessages();
             plugin.sendInfo(commandSender, "已重载配置");
             return true;
         }
@@ -1260,5 +1364,332 @@ class MyCommand extends TheMcCommand.HasSub {
             return null;
         }
     }
-}
 
+    class Import extends TheMcCommand {
+
+        private final @NotNull Permission permission;
+
+        // 同一时间只能有一个导入任务
+        private volatile boolean running = false;
+
+        protected Import() {
+            super("import");
+            this.permission = plugin.addPermission(MyCommand.this.permission.getName() + "." + this.getLabel());
+        }
+
+        @Override
+        protected boolean canNotExecute(@NotNull CommandSender commandSender) {
+            return !commandSender.hasPermission(this.permission);
+        }
+
+        @Override
+        public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+            // <源数据库> [表名] [nocheck]
+            // 源数据库在 config.yml 的 import.sources 中配置，命令中只写名字
+            final String argSource = strings.length > 0 ? strings[0] : null;
+            final String argTable = strings.length > 1 ? strings[1] : "chinese_name";
+            final boolean check = !(strings.length > 2 && strings[2].equalsIgnoreCase("nocheck"));
+
+            if (argSource == null) {
+                plugin.sendError(commandSender, "你必须指定参数：源数据库的名字（config.yml 中的 import.sources）");
+                return true;
+            }
+
+            final ConfigManager.ImportSource source = argSource.matches("[A-Za-z0-9_-]+") ?
+                    plugin.getConfigManager().getImportSource(argSource) : null;
+            if (source == null) {
+                plugin.sendError(commandSender, "config.yml 中没有配置源数据库：import.sources.%s.url".formatted(argSource));
+                return true;
+            }
+
+            if (!argTable.matches("[A-Za-z0-9_]+")) {
+                plugin.sendError(commandSender, "不正确的表名：%s".formatted(argTable));
+                return true;
+            }
+
+            if (this.running) {
+                plugin.sendWarning(commandSender, "已经有一个导入任务正在执行");
+                return true;
+            }
+            this.running = true;
+
+            runAsync(this, commandSender, () -> {
+                try {
+                    this.runImport(commandSender, source, argTable, check);
+                } finally {
+                    this.running = false;
+                }
+            });
+
+            return true;
+        }
+
+        private void runImport(@NotNull CommandSender sender, @NotNull ConfigManager.ImportSource source, @NotNull String table, boolean check) {
+            final ChineseNameApiImpl api = plugin.getChineseNameApi();
+
+            if (api == null) {
+                plugin.sendError(sender, "ChineseNameApiImpl is null!");
+                return;
+            }
+
+            final File folder = plugin.getDataFolder();
+            final NameImporter importer = api.createNameImporter(
+                    new File(folder, "import.checkpoint"), new File(folder, "import-conflicts.csv"));
+            // 默认按照配置的规则检查中文名，nocheck时只检查是否为空和长度
+            if (check) importer.setValidator(api.getApplicationService().getNameValidator());
+            else plugin.sendWarning(sender, "不按照中文名规则检查导入的名字");
+
+            final long begin = System.currentTimeMillis();
+            final NameImporter.Progress result;
+
+            try (final Connection connection = source.user().isEmpty() ? DriverManager.getConnection(source.url()) :
+                    DriverManager.getConnection(source.url(), source.user(), source.password())) {
+                api.migrate(plugin.getSLF4JLogger());
+
+                final int[] batches = {0};
+                result = importer.importFrom(connection, table, source.url() + " " + table, p -> {
+                    if (++batches[0] % 20 == 0) {
+                        plugin.sendInfo(sender, "已读取%d条，导入%d条".formatted(p.read(), p.imported()));
+                    }
+                });
+            } catch (SQLException | IOException e) {
+                plugin.handleException("import command -> name importer -> import", e);
+                plugin.sendException(sender, e);
+                plugin.sendWarning(sender, "已经导入的部分不受影响，再次执行相同的命令会从中断处继续");
+                return;
+            }
+
+            plugin.sendInfo(sender, "导入完成，耗时%ds，读取%d条，导入%d条，不正确%d条，冲突%d条".formatted(
+                    (System.currentTimeMillis() - begin) / 1000, result.read(), result.imported(), result.invalid(), result.conflicts()));
+
+            if (result.invalid() + result.conflicts() > 0) {
+                plugin.sendInfo(sender, "没有导入的记录见 import-conflicts.csv");
+            }
+        }
+
+        @Override
+        public @Nullable List<String> onTabComplete(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+            if (strings.length == 1) {
+                final String arg = strings[0];
+                final LinkedList<String> list = new LinkedList<>();
+                if (arg.isEmpty()) list.add("<源数据库>");
+                for (final String name : plugin.getConfigManager().getImportSourceNames()) {
+                    if (name.startsWith(arg)) list.add(name);
+                }
+                return list;
+            }
+
+            if (strings.length == 2) {
+                if (strings[1].isEmpty()) return Collections.singletonList("[表名]");
+                return null;
+            }
+
+            if (strings.length == 3) return Collections.singletonList("nocheck");
+
+            return null;
+        }
+    }
+
+    class Export extends TheMcCommand {
+
+        private final @NotNull Permission permission;
+
+        protected Export() {
+            super("export");
+            this.permission = plugin.addPermission(MyCommand.this.permission.getName() + "." + this.getLabel());
+        }
+
+        @Override
+        protected boolean canNotExecute(@NotNull CommandSender commandSender) {
+            return !commandSender.hasPermission(this.permission);
+        }
+
+        @Override
+        public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+            // <names|apps> [ndjson|csv]
+            final String argWhat = strings.length > 0 ? strings[0] : null;
+            final String argFormat = strings.length > 1 ? strings[1] : "ndjson";
+
+            if (argWhat == null) {
+                plugin.sendError(commandSender, "你必须指定参数：names或apps");
+                return true;
+            }
+
+            final boolean names;
+            if (argWhat.equals("names")) names = true;
+            else if (argWhat.equals("apps")) names = false;
+            else {
+                plugin.sendError(commandSender, "只能导出names或apps：%s".formatted(argWhat));
+                return true;
+            }
+
+            final DataExporter.Format format = DataExporter.Format.of(argFormat);
+            if (format == null) {
+                plugin.sendError(commandSender, "不支持的格式：%s，只能为ndjson或csv".formatted(argFormat));
+                return true;
+            }
+
+            runAsync(this, commandSender, () -> {
+                final ChineseNameApiImpl api = plugin.getChineseNameApi();
+
+                if (api == null) {
+                    plugin.sendError(commandSender, "ChineseNameApiImpl is null!");
+                    return;
+                }
+
+                final String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(System.currentTimeMillis());
+                final Path file = plugin.getDataFolder().toPath().resolve("export")
+                        .resolve("%s-%s.%s".formatted(argWhat, time, format.extension()));
+
+                final long begin = System.currentTimeMillis();
+                final long count;
+                try {
+                    Files.createDirectories(file.getParent());
+                    final DataExporter exporter = api.createDataExporter();
+                    count = names ? exporter.exportNames(file, format) : exporter.exportApplications(file, format);
+                } catch (SQLException | IOException e) {
+                    plugin.handleException("export command -> data exporter -> export", e);
+                    plugin.sendException(commandSender, e);
+                    return;
+                }
+
+                plugin.sendInfo(commandSender, "已导出%d条到 %s，耗时%dms".formatted(
+                        count, plugin.getDataFolder().toPath().relativize(file), System.currentTimeMillis() - begin));
+            });
+
+            return true;
+        }
+
+        @Override
+        public @Nullable List<String> onTabComplete(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+            if (strings.length == 1) return List.of("names", "apps");
+            if (strings.length == 2) return List.of("ndjson", "csv");
+            return null;
+        }
+    }
+
+    class Stats extends TheMcCommand {
+
+        private final @NotNull Permission permission;
+
+        protected Stats() {
+            super("stats");
+            this.permission = plugin.addPermission(MyCommand.this.permission.getName() + "." + this.getLabel());
+        }
+
+        @Override
+        protected boolean canNotExecute(@NotNull CommandSender commandSender) {
+            return !commandSender.hasPermission(this.permission);
+        }
+
+        private static @NotNull String formatNanos(long nanos) {
+            if (nanos < 1000_000L) return "%.1fμs".formatted(nanos / 1000.0);
+            if (nanos < 1000_000_000L) return "%.1fms".formatted(nanos / 1000_000.0);
+            return "%.2fs".formatted(nanos / 1000_000_000.0);
+        }
+
+        @Override
+        public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+            // [reset]
+            final ChineseNameApiImpl api = plugin.getChineseNameApi();
+
+            if (api == null) {
+                plugin.sendError(commandSender, "ChineseNameApiImpl is null!");
+                return true;
+            }
+
+            final ServiceMetrics metrics = api.getMetrics();
+
+            if (strings.length > 0 && strings[0].equals("reset")) {
+                metrics.reset();
+                plugin.sendInfo(commandSender, "已清空统计数据");
+                return true;
+            }
+
+            final List<ServiceMetrics.OperationSnapshot> list = metrics.snapshot();
+            if (list.isEmpty()) {
+                plugin.sendInfo(commandSender, "还没有统计数据");
+                return true;
+            }
+
+            final TextComponent.Builder text = Component.text();
+            text.append(Component.text("==== 服务调用统计 ====").color(NamedTextColor.GREEN));
+            text.appendNewline();
+            text.append(Component.text("操作 | 次数 | 拒绝 | 错误 | 平均 | p50 | p99 | 最大 | 等锁p99 | SQL p99").color(NamedTextColor.GRAY));
+
+            for (final ServiceMetrics.OperationSnapshot o : list) {
+                text.appendNewline();
+                text.append(Component.text(o.operation().getLabel()).color(NamedTextColor.AQUA));
+                text.append(Component.text(" | %d | %d | ".formatted(o.calls(), o.rejected())).color(NamedTextColor.GREEN));
+                text.append(Component.text(o.errors()).color(o.errors() > 0 ? NamedTextColor.RED : NamedTextColor.GREEN));
+                text.append(Component.text(" | %s | %s | %s | %s | %s | %s".formatted(
+                        formatNanos(o.meanNanos()), formatNanos(o.p50Nanos()), formatNanos(o.p99Nanos()),
+                        formatNanos(o.maxNanos()), formatNanos(o.lockWaitP99Nanos()), formatNanos(o.sqlP99Nanos())
+                )).color(NamedTextColor.GREEN));
+            }
+
+            plugin.sendInfo(commandSender, text.build());
+            return true;
+        }
+
+        @Override
+        public @Nullable List<String> onTabComplete(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+            if (strings.length == 1) return Collections.singletonList("reset");
+            return null;
+        }
+    }
+
+    class Slow extends TheMcCommand {
+
+        private final @NotNull Permission permission;
+
+        protected Slow() {
+            super("slow");
+            this.permission = plugin.addPermission(MyCommand.this.permission.getName() + "." + this.getLabel());
+        }
+
+        @Override
+        protected boolean canNotExecute(@NotNull CommandSender commandSender) {
+            return !commandSender.hasPermission(this.permission);
+        }
+
+        @Override
+        public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+            // [clear]
+            if (strings.length > 0 && strings[0].equals("clear")) {
+                SqlTracer.clear();
+                plugin.sendInfo(commandSender, "已清空最慢的SQL列表");
+                return true;
+            }
+
+            final List<SqlTracer.SlowQuery> list = SqlTracer.getSlowest();
+            if (list.isEmpty()) {
+                plugin.sendInfo(commandSender, "最近一小时没有记录到SQL");
+                return true;
+            }
+
+            final SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss");
+
+            final TextComponent.Builder text = Component.text();
+            text.append(Component.text("==== 最近一小时最慢的SQL ====").color(NamedTextColor.GREEN));
+
+            for (final SqlTracer.SlowQuery q : list) {
+                text.appendNewline();
+                text.append(Component.text("%.1fms".formatted(q.nanos() / 1000_000.0)).color(NamedTextColor.RED));
+                final String result = q.sqlState() == null ? "%d行".formatted(q.rows()) : "失败(" + q.sqlState() + ")";
+                text.append(Component.text(" %s %s %s ".formatted(format.format(q.time()), result, q.caller())).color(NamedTextColor.GRAY));
+                text.append(Component.text(q.sql()).color(NamedTextColor.GREEN)
+                        .hoverEvent(HoverEvent.showText(Component.text("参数：" + q.params()))));
+            }
+
+            plugin.sendInfo(commandSender, text.build());
+            return true;
+        }
+
+        @Override
+        public @Nullable List<String> onTabComplete(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] strings) {
+            if (strings.length == 1) return Collections.singletonList("clear");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 已注册中文名的布隆过滤器：mightContain返回false时，构建之后本服务器没有见过这个名字
+// 其它服务器注册的名字要等重新构建后才能看到，只能用于内部可以由数据库兜底的预先检查
+class NameBloomFilter {
+
+    private final @NotNull AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final int capacity;
+
+    private final @NotNull AtomicInteger added = new AtomicInteger(0);
+
+    private final long createTime;
+
+    NameBloomFilter(int capacity, double fpp) {
+        this.capacity = capacity;
+
+        final double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-capacity * Math.log(fpp) / (ln2 * ln2));
+        m = Math.max(64, (m + 63) / 64 * 64);
+
+        this.bitCount = m;
+        this.bits = new AtomicLongArray((int) (m / 64));
+        this.hashCount = Math.max(1, (int) Math.round((double) m / capacity * ln2));
+        this.createTime = System.currentTimeMillis();
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    void add(@NotNull String name) {
+        final long h = mix(name.hashCode());
+        final int h1 = (int) h;
+        final int h2 = (int) (h >>> 32);
+
+        for (int i = 1; i <= this.hashCount; ++i) {
+            final long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % this.bitCount;
+            final int word = (int) (index >>> 6);
+            final long mask = 1L << index;
+
+            long old;
+            do {
+                old = this.bits.get(word);
+                if ((old & mask) != 0) break;
+            } while (!this.bits.compareAndSet(word, old, old | mask));
+        }
+
+        this.added.incrementAndGet();
+    }
+
+    boolean mightContain(@NotNull String name) {
+        final long h = mix(name.hashCode());
+        final int h1 = (int) h;
+        final int h2 = (int) (h >>> 32);
+
+        for (int i = 1; i <= this.hashCount; ++i) {
+            final long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % this.bitCount;
+            if ((this.bits.get((int) (index >>> 6)) & (1L << index)) == 0) return false;
+        }
+        return true;
+    }
+
+    // 超出容量后误判率会上升，或者存在时间太长，可能漏掉其它服务器写入的名字，需要重建
+    boolean isStale(long maxAgeMillis) {
+        if (this.added.get() > this.capacity) return true;
+        return System.currentTimeMillis() - this.createTime > maxAgeMillis;
+    }
+}
@@ -0,0 +1,83 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.NameInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// UUID -> NameInfo 的有界LRU缓存，也缓存"没有中文名"的结果
+// 在线玩家的条目放在会话表中，不会被淘汰，直到玩家退出
+class NameCache {
+
+    record Entry(@Nullable NameInfo info) {
+    }
+
+    private static final Entry EMPTY = new Entry(null);
+
+    private final @NotNull LinkedHashMap<UUID, Entry> map;
+
+    // 值为null表示会话已开始但是还没有加载
+    private final @NotNull HashMap<UUID, Entry> session = new HashMap<>();
+
+    NameCache(int capacity) {
+        this.map = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    private static @NotNull Entry entryOf(@Nullable NameInfo info) {
+        return info == null ? EMPTY : new Entry(info);
+    }
+
+    synchronized @Nullable Entry get(@NotNull UUID uuid) {
+        if (this.session.containsKey(uuid)) return this.session.get(uuid);
+        return this.map.get(uuid);
+    }
+
+    synchronized void put(@NotNull UUID uuid, @Nullable NameInfo info) {
+        if (this.session.containsKey(uuid)) {
+            this.session.put(uuid, entryOf(info));
+            return;
+        }
+        this.map.put(uuid, entryOf(info));
+    }
+
+    // 已经有值时不覆盖，返回缓存中的值
+    synchronized @Nullable NameInfo putIfAbsent(@NotNull UUID uuid, @Nullable NameInfo info) {
+        final Entry old = this.get(uuid);
+        if (old != null) return old.info();
+        this.put(uuid, info);
+        return info;
+    }
+
+    synchronized void invalidate(@NotNull UUID uuid) {
+        if (this.session.containsKey(uuid)) {
+            this.session.put(uuid, null);
+            return;
+        }
+        this.map.remove(uuid);
+    }
+
+    // 返回是否已经有缓存的值
+    synchronized boolean startSession(@NotNull UUID uuid) {
+        if (!this.session.containsKey(uuid)) this.session.put(uuid, this.map.remove(uuid));
+        return this.session.get(uuid) != null;
+    }
+
+    synchronized void endSession(@NotNull UUID uuid) {
+        final Entry entry = this.session.remove(uuid);
+        if (entry != null) this.map.put(uuid, entry);
+    }
+
+    synchronized void clear() {
+        this.map.clear();
+        this.session.clear();
+    }
+}
@@ -0,0 +1,294 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.NameInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// 从其它数据库（例如旧的SQLite文件）批量导入中文名
+// 源表按 (uid1, uid2) 分批读取，每批在一个事务中写入，提交后记录检查点，中断后从检查点继续
+// 名字冲突的记录不导入，写入冲突报告
+class NameImporter {
+
+    record Progress(long read, long imported, long invalid, long conflicts) {
+    }
+
+    // 检查点，最后一条已经导入的 (uid1, uid2) 和当时的进度
+    private record Checkpoint(@NotNull String source, long uid1, long uid2, @NotNull Progress progress) {
+    }
+
+    private final @NotNull SessionSource target;
+
+    private final @NotNull NameServiceImpl nameService;
+
+    private final @NotNull File checkpointFile;
+
+    private final @NotNull File reportFile;
+
+    private int batchSize = 500;
+
+    // 为null时不检查名字是否符合规则
+    private @Nullable NameValidator validator = null;
+
+    NameImporter(@NotNull SessionSource target, @NotNull NameServiceImpl nameService, @NotNull File checkpointFile, @NotNull File reportFile) {
+        this.target = target;
+        this.nameService = nameService;
+        this.checkpointFile = checkpointFile;
+        this.reportFile = reportFile;
+    }
+
+    void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    void setValidator(@Nullable NameValidator validator) {
+        this.validator = validator;
+    }
+
+    private static @NotNull NameInfo parseRow(@NotNull ResultSet resultSet) throws SQLException {
+        return new NameInfo(
+                new UUID(resultSet.getLong(1), resultSet.getLong(2)),
+                resultSet.getString(3),
+                resultSet.getLong(4),
+                resultSet.getInt(5) != 0
+        );
+    }
+
+    // 返回null表示名字没有问题
+    private @Nullable String checkRow(@NotNull NameInfo info) {
+        final String name = info.name();
+        if (name == null || name.isBlank()) return "empty";
+        if (name.length() > 64) return "too-long";
+
+        final NameValidator v = this.validator;
+        if (v != null && !v.isValid(name)) return "invalid";
+        return null;
+    }
+
+    private @Nullable Checkpoint readCheckpoint(@NotNull String source) throws IOException {
+        if (!this.checkpointFile.isFile()) return null;
+
+        final List<String> lines = Files.readAllLines(this.checkpointFile.toPath(), StandardCharsets.UTF_8);
+        if (lines.size() < 3 || !lines.get(0).equals(source)) return null;
+
+        try {
+            final String[] last = lines.get(1).split(" ");
+            final String[] p = lines.get(2).split(" ");
+            return new Checkpoint(source, Long.parseLong(last[0]), Long.parseLong(last[1]), new Progress(
+                    Long.parseLong(p[0]), Long.parseLong(p[1]), Long.parseLong(p[2]), Long.parseLong(p[3])));
+        } catch (RuntimeException e) {
+            throw new IOException("检查点文件已损坏：" + this.checkpointFile, e);
+        }
+    }
+
+    // 先写临时文件再替换，中断时不会留下一半的检查点
+    private void writeCheckpoint(@NotNull Checkpoint checkpoint) throws IOException {
+        final Progress p = checkpoint.progress();
+        final String content = "%s\n%d %d\n%d %d %d %d\n".formatted(checkpoint.source(),
+                checkpoint.uid1(), checkpoint.uid2(), p.read(), p.imported(), p.invalid(), p.conflicts());
+
+        final File tmp = new File(this.checkpointFile.getPath() + ".tmp");
+        Files.writeString(tmp.toPath(), content, StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), this.checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private @NotNull BufferedWriter openReport() throws IOException {
+        final boolean exists = this.reportFile.isFile();
+        final BufferedWriter writer = Files.newBufferedWriter(this.reportFile.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (!exists) {
+            writer.write("uuid,name,reason,owner");
+            writer.newLine();
+        }
+        return writer;
+    }
+
+    private static void report(@NotNull BufferedWriter writer, @NotNull NameInfo info, @NotNull String reason, @Nullable UUID owner) throws IOException {
+        // 名字没有经过检查，可能含有逗号、引号或者换行
+        final StringBuilder line = new StringBuilder(64);
+        line.append(info.uuid()).append(',');
+        DataExporter.appendCsv(line, info.name());
+        line.append(',');
+        DataExporter.appendCsv(line, reason);
+        line.append(',');
+        if (owner != null) line.append(owner);
+        writer.write(line.toString());
+        writer.newLine();
+    }
+
+    // source: 源数据库的连接，table: 源表名，表结构和chinese_name相同
+    // sourceId: 用于识别检查点属于哪次导入，例如JDBC URL
+    @NotNull Progress importFrom(@NotNull Connection source, @NotNull String table, @NotNull String sourceId,
+                                 @Nullable Consumer<Progress> onBatch) throws SQLException, IOException {
+
+        final Checkpoint checkpoint = this.readCheckpoint(sourceId);
+
+        long read = 0, imported = 0, invalid = 0, conflicts = 0;
+        boolean first = true;
+        long uid1 = 0, uid2 = 0;
+
+        if (checkpoint != null) {
+            first = false;
+            uid1 = checkpoint.uid1();
+            uid2 = checkpoint.uid2();
+            read = checkpoint.progress().read();
+            imported = checkpoint.progress().imported();
+            invalid = checkpoint.progress().invalid();
+            conflicts = checkpoint.progress().conflicts();
+        }
+
+        final String columns = "SELECT uid1, uid2, name, time, enable FROM %s".formatted(table);
+
+        try (final PreparedStatement psFirst = source.prepareStatement(columns + " ORDER BY uid1, uid2 LIMIT ?");
+             final PreparedStatement psNext = source.prepareStatement(columns + " WHERE uid1 > ? OR (uid1 = ? AND uid2 > ?) ORDER BY uid1, uid2 LIMIT ?");
+             final BufferedWriter writer = this.openReport()) {
+
+            psFirst.setFetchSize(this.batchSize);
+            psNext.setFetchSize(this.batchSize);
+
+            final ArrayList<NameInfo> batch = new ArrayList<>(this.batchSize);
+
+            while (true) {
+                // 读取一批
+                batch.clear();
+                final PreparedStatement ps;
+                if (first) {
+                    ps = psFirst;
+                    ps.setInt(1, this.batchSize);
+                } else {
+                    ps = psNext;
+                    ps.setLong(1, uid1);
+                    ps.setLong(2, uid1);
+                    ps.setLong(3, uid2);
+                    ps.setInt(4, this.batchSize);
+                }
+
+                try (final ResultSet resultSet = ps.executeQuery()) {
+                    while (resultSet.next()) batch.add(parseRow(resultSet));
+                }
+
+                if (batch.isEmpty()) break;
+
+                final NameInfo last = batch.get(batch.size() - 1);
+                first = false;
+                uid1 = last.uuid().getMostSignificantBits();
+                uid2 = last.uuid().getLeastSignificantBits();
+                read += batch.size();
+
+                // 并行检查，结果保持原来的顺序
+                final Map<Boolean, List<NameInfo>> checked = batch.parallelStream()
+                        .collect(Collectors.partitioningBy(info -> this.checkRow(info) == null));
+
+                for (final NameInfo info : checked.get(false)) {
+                    report(writer, info, Objects.requireNonNull(this.checkRow(info)), null);
+                    ++invalid;
+                }
+
+                // 同一批中重复的名字，保留先读到的
+                final LinkedHashMap<String, NameInfo> byName = new LinkedHashMap<>();
+                for (final NameInfo info : checked.get(true)) {
+                    final NameInfo old = byName.putIfAbsent(info.name(), info);
+                    if (old != null) {
+                        report(writer, info, "duplicate", old.uuid());
+                        ++conflicts;
+                    }
+                }
+
+                final List<NameInfo> written = new ArrayList<>(byName.size());
+                final List<NameInfo> rejected = new ArrayList<>();
+                final Map<NameInfo, UUID> owners = new HashMap<>();
+
+                this.writeBatch(new ArrayList<>(byName.values()), written, rejected, owners);
+
+                for (final NameInfo info : rejected) {
+                    report(writer, info, "registered", owners.get(info));
+                    ++conflicts;
+                }
+                imported += written.size();
+
+                writer.flush();
+                this.nameService.onImported(written);
+
+                final Progress progress = new Progress(read, imported, invalid, conflicts);
+                this.writeCheckpoint(new Checkpoint(sourceId, uid1, uid2, progress));
+                if (onBatch != null) onBatch.accept(progress);
+
+                if (batch.size() < this.batchSize) break;
+            }
+        }
+
+        // 导入完成，不再需要检查点
+        Files.deleteIfExists(this.checkpointFile.toPath());
+
+        return new Progress(read, imported, invalid, conflicts);
+    }
+
+    // 写入一批，名字已经属于其它玩家的放入rejected
+    private void writeBatch(@NotNull List<NameInfo> list, @NotNull List<NameInfo> written,
+                            @NotNull List<NameInfo> rejected, @NotNull Map<NameInfo, UUID> owners) throws SQLException {
+        if (list.isEmpty()) return;
+
+        // 过滤器判断一定没有被注册的名字不需要查询，过时的结果在写入时由唯一约束发现
+        final ArrayList<String> maybeRegistered = new ArrayList<>();
+        for (final NameInfo info : list) {
+            if (this.nameService.mightBeRegistered(info.name())) maybeRegistered.add(info.name());
+        }
+
+        this.target.execute(s -> {
+            final ChineseNameTable t = s.getNameTable();
+            final Dialect dialect = s.getDialect();
+
+            // 先排除已经被其它玩家注册的名字
+            final Map<String, NameInfo> registered = maybeRegistered.isEmpty() ? Map.of() : t.queryByNames(maybeRegistered);
+            final ArrayList<NameInfo> todo = new ArrayList<>(list.size());
+            for (final NameInfo info : list) {
+                final NameInfo owner = registered.get(info.name());
+                if (owner != null && !owner.uuid().equals(info.uuid())) {
+                    rejected.add(info);
+                    owners.put(info, owner.uuid());
+                } else {
+                    todo.add(info);
+                }
+            }
+            if (todo.isEmpty()) return null;
+
+            try {
+                final int[] counts = s.transaction(x -> x.getNameTable().upsertBatch(todo, dialect));
+
+                // 检查之后被别人抢先注册的
+                for (int i = 0; i < todo.size(); ++i) {
+                    if (counts[i] == 0) rejected.add(todo.get(i));
+                    else written.add(todo.get(i));
+                }
+                return null;
+            } catch (BatchUpdateException e) {
+                // 已经回滚，只有违反唯一约束时才逐条写入，断开连接、死锁等直接抛出
+                if (!dialect.isConstraintViolation(e)) throw e;
+            }
+
+            // 批量写入违反唯一约束，逐条写入找出冲突的
+            for (final NameInfo info : todo) {
+                try {
+                    final int[] counts = t.upsertBatch(List.of(info), dialect);
+                    if (counts[0] == 0) rejected.add(info);
+                    else written.add(info);
+                } catch (SQLException e) {
+                    if (!dialect.isConstraintViolation(e)) throw e;
+                    rejected.add(info);
+                }
+            }
+            return null;
+        });
+    }
+}
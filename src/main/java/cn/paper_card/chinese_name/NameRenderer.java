@@ -0,0 +1,191 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.NameInfo;
+import com.github.Anon8281.universalScheduler.UniversalScheduler;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 把启用的中文名显示在玩家的显示名、Tab列表和头顶（可选）
+// 每个在线玩家缓存一份生成好的Component，名字改变时才重新生成，并立即应用
+// 在玩家所在的线程中只读取缓存，需要访问数据库时在异步线程中查询
+class NameRenderer implements Listener, NameServiceImpl.NameChangeListener {
+
+    // Component不可变，可以在线程之间共享
+    record Rendered(@NotNull String name, @NotNull Component displayName, @NotNull Component listName,
+                    @NotNull Component prefix) {
+    }
+
+    // nametag: 使用主计分板的队伍前缀，玩家会离开原来的队伍，所以默认关闭，Folia不支持
+    record Options(boolean displayName, boolean listName, boolean nametag) {
+    }
+
+    private final @NotNull ThePlugin plugin;
+
+    // 已经应用了中文名的在线玩家
+    private final @NotNull ConcurrentHashMap<UUID, Rendered> rendered = new ConcurrentHashMap<>();
+
+    private volatile @NotNull Options options = new Options(true, true, false);
+
+    NameRenderer(@NotNull ThePlugin plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    // 修改配置后，已经应用了中文名的玩家按新的配置重新应用
+    void configure(@NotNull Options options) {
+        final Options old = this.options;
+        final Options o = new Options(options.displayName(), options.listName(), options.nametag() && !UniversalScheduler.isFolia);
+        this.options = o;
+        if (old.equals(o)) return;
+
+        for (final Player player : this.plugin.getServer().getOnlinePlayers()) {
+            final Rendered r = this.rendered.get(player.getUniqueId());
+            if (r == null) continue;
+            this.plugin.getTaskScheduler().runTask(player, () -> {
+                apply(player, null, old);
+                apply(player, r, o);
+            });
+        }
+    }
+
+    private static @NotNull String teamName(@NotNull UUID uuid) {
+        return "ch-name-" + uuid;
+    }
+
+    private static @NotNull Rendered render(@NotNull String playerName, @NotNull String name) {
+        return new Rendered(name,
+                Component.text(name),
+                Component.text(name).append(Component.text("(" + playerName + ")").color(NamedTextColor.GRAY)),
+                Component.text(name + " ").color(NamedTextColor.AQUA)
+        );
+    }
+
+    // 只有启用的中文名才显示
+    private @Nullable Rendered update(@NotNull Player player, @Nullable NameInfo info) {
+        final UUID uuid = player.getUniqueId();
+        if (info == null || !info.enable()) {
+            this.rendered.remove(uuid);
+            return null;
+        }
+
+        final Rendered old = this.rendered.get(uuid);
+        if (old != null && old.name().equals(info.name())) return old;
+
+        final Rendered r = render(player.getName(), info.name());
+        this.rendered.put(uuid, r);
+        return r;
+    }
+
+    // 需要在玩家所在的线程中调用，r为null时恢复原样
+    private void apply(@NotNull Player player, @Nullable Rendered r, @NotNull Options o) {
+        if (o.displayName()) player.displayName(r != null ? r.displayName() : null);
+        if (o.listName()) player.playerListName(r != null ? r.listName() : null);
+        if (o.nametag()) this.applyNametag(player, r);
+    }
+
+    private void apply(@NotNull Player player, @Nullable Rendered r) {
+        this.apply(player, r, this.options);
+    }
+
+    private void applyNametag(@NotNull Player player, @Nullable Rendered r) {
+        final Scoreboard board = this.plugin.getServer().getScoreboardManager().getMainScoreboard();
+        final String name = teamName(player.getUniqueId());
+
+        Team team = board.getTeam(name);
+        if (r == null) {
+            if (team != null) team.unregister();
+            return;
+        }
+
+        if (team == null) team = board.registerNewTeam(name);
+        team.prefix(r.prefix());
+        if (!team.hasEntry(player.getName())) team.addEntry(player.getName());
+    }
+
+    // 在写入中文名的线程中调用
+    @Override
+    public void onNameChanged(@NotNull UUID uuid, @Nullable NameInfo info) {
+        final Player player = this.plugin.getServer().getPlayer(uuid);
+        if (player == null) return;
+
+        final Rendered old = this.rendered.get(uuid);
+        final Rendered r = this.update(player, info);
+        if (old == r) return;
+
+        this.plugin.getTaskScheduler().runTask(player, () -> this.apply(player, r));
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(@NotNull PlayerJoinEvent event) {
+        final Player player = event.getPlayer();
+        final ChineseNameApiImpl api = this.plugin.getChineseNameApi();
+        if (api == null) return;
+
+        // 登录前已经预加载，通常命中缓存
+        final NameCache.Entry entry = api.getNameService().getCached(player.getUniqueId());
+        if (entry != null) {
+            this.apply(player, this.update(player, entry.info()));
+            return;
+        }
+
+        this.plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+            final NameInfo info;
+            try {
+                info = api.getNameService().queryByUuid(player.getUniqueId());
+            } catch (SQLException e) {
+                this.plugin.handleException("join -> name service -> query by uuid", e);
+                return;
+            }
+            this.onNameChanged(player.getUniqueId(), info);
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(@NotNull PlayerQuitEvent event) {
+        final Player player = event.getPlayer();
+        if (this.rendered.remove(player.getUniqueId()) != null && this.options.nametag()) this.applyNametag(player, null);
+    }
+
+    // 已经在线的玩家，例如重载插件时
+    void renderOnlinePlayers() {
+        final ChineseNameApiImpl api = this.plugin.getChineseNameApi();
+        if (api == null) return;
+
+        for (final Player player : this.plugin.getServer().getOnlinePlayers()) {
+            this.plugin.getTaskScheduler().runTaskAsynchronously(() -> {
+                final NameInfo info;
+                try {
+                    info = api.getNameService().queryByUuid(player.getUniqueId());
+                } catch (SQLException e) {
+                    this.plugin.handleException("render online players -> name service -> query by uuid", e);
+                    return;
+                }
+                this.onNameChanged(player.getUniqueId(), info);
+            });
+        }
+    }
+
+    // 插件关闭时恢复原样，Folia中不能在这里访问玩家
+    void destroy() {
+        if (!UniversalScheduler.isFolia) {
+            for (final Player player : this.plugin.getServer().getOnlinePlayers()) {
+                if (this.rendered.containsKey(player.getUniqueId())) this.apply(player, null);
+            }
+        }
+        this.rendered.clear();
+    }
+}
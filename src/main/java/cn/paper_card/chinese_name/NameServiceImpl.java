@@ -3,168 +3,368 @@ package cn.paper_card.chinese_name;
 import cn.paper_card.chinese_name.api.NameInfo;
 import cn.paper_card.chinese_name.api.NameService;
 import cn.paper_card.chinese_name.api.exception.NameRegisteredException;
-import cn.paper_card.database.api.DatabaseApi;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 class NameServiceImpl implements NameService {
 
-    private final @NotNull DatabaseApi.MySqlConnection mySqlConnection;
+    // 中文名改变后调用，在写入的线程中调用，info为null表示已经删除
+    interface NameChangeListener {
+        void onNameChanged(@NotNull UUID uuid, @Nullable NameInfo info);
+    }
+
+    private static final long NAME_FILTER_MAX_AGE = 10 * 60 * 1000L;
+
+    private final @NotNull SessionSource source;
+
+    private final @NotNull StripedLocks locks;
+
+    private final @NotNull AsyncExecutor asyncExecutor;
+
+    private final @NotNull ServiceMetrics metrics;
+
+    private final @NotNull NameCache cache;
 
-    private Connection connection = null;
+    private final @NotNull NameWriteBehind writeBehind;
 
-    private ChineseNameTable table = null;
+    private volatile NameBloomFilter nameFilter = null;
 
+    private final @NotNull Object nameFilterLock = new Object();
 
-    NameServiceImpl(@NotNull DatabaseApi.MySqlConnection mySqlConnection) {
-        this.mySqlConnection = mySqlConnection;
+    private volatile boolean uniqueKeysReady = false;
 
+    private volatile @Nullable NameChangeListener nameChangeListener = null;
+
+    NameServiceImpl(@NotNull SessionSource source, @NotNull StripedLocks locks, @NotNull AsyncExecutor asyncExecutor,
+                    @NotNull ServiceMetrics metrics) {
+        this.source = source;
+        this.locks = locks;
+        this.asyncExecutor = asyncExecutor;
+        this.metrics = metrics;
+        this.cache = new NameCache(4096);
+        this.writeBehind = new NameWriteBehind(source, asyncExecutor);
     }
 
+    // 只由导入的预先检查加载，写入路径上不加载
+    private @NotNull NameBloomFilter getNameFilter() throws SQLException {
+        final NameBloomFilter f = this.nameFilter;
+        if (f != null && !f.isStale(NAME_FILTER_MAX_AGE)) return f;
+
+        synchronized (this.nameFilterLock) {
+            final NameBloomFilter f2 = this.nameFilter;
+            if (f2 != null && !f2.isStale(NAME_FILTER_MAX_AGE)) return f2;
+
+            // 加载期间其它线程写入的名字可能会漏掉，由数据库的唯一约束兜底
+            final NameBloomFilter filter = this.source.execute(s -> {
+                final ChineseNameTable t = s.getNameTable();
+                final int count = t.queryCount();
+                final NameBloomFilter nf = new NameBloomFilter(Math.max(65536, count * 2), 0.01);
+                t.queryAllNames(nf::add);
+                return nf;
+            });
+
+            this.nameFilter = filter;
+            return filter;
+        }
+    }
 
-    private @NotNull ChineseNameTable getTable() throws SQLException {
-        final Connection newCon = this.mySqlConnection.getRawConnection();
+    // 写入已经提交，只在过滤器已经加载时添加，不查询数据库也不抛出异常
+    private void addToNameFilter(@NotNull String name) {
+        final NameBloomFilter f = this.nameFilter;
+        if (f != null) f.add(name);
+    }
 
-        if (this.connection != null && this.connection == newCon) return this.table;
+    // 只用于内部的预先检查，返回false表示本服务器最近没有见过这个名字
+    // 其它服务器在过滤器重建之前注册的名字也会返回false，调用者需要由数据库的唯一约束兜底
+    boolean mightBeRegistered(@NotNull String name) throws SQLException {
+        return this.getNameFilter().mightContain(name);
+    }
 
-        if (this.table != null) this.table.close();
-        this.connection = newCon;
-        this.table = new ChineseNameTable(newCon);
-        return this.table;
+    void setNameChangeListener(@Nullable NameChangeListener listener) {
+        this.nameChangeListener = listener;
     }
 
-    void destroy() throws SQLException {
-        synchronized (this.mySqlConnection) {
-            final ChineseNameTable t = this.table;
+    private void notifyChanged(@NotNull UUID uuid, @Nullable NameInfo info) {
+        final NameChangeListener l = this.nameChangeListener;
+        if (l != null) l.onNameChanged(uuid, info);
+    }
 
-            if (t == null) {
-                this.connection = null;
-                return;
-            }
+    // 只查询缓存，不访问数据库，可以在主线程中调用
+    @Nullable NameCache.Entry getCached(@NotNull UUID uuid) {
+        return this.cache.get(uuid);
+    }
 
-            this.connection = null;
-            this.table = null;
+    void setWriteBehindErrorHandler(@Nullable BiConsumer<String, Throwable> handler) {
+        this.writeBehind.setErrorHandler(handler);
+    }
 
-            t.close();
-        }
+    void setWriteBehindMaxPending(int maxPending) {
+        this.writeBehind.setMaxPending(maxPending);
     }
 
+    // 写入延迟的启用、禁用，应该定时调用，关闭前也要调用
+    int flushPending() throws SQLException {
+        return this.writeBehind.flush();
+    }
 
-    @Override
-    public boolean addOrUpdateByUuid(@NotNull NameInfo info) throws SQLException, NameRegisteredException {
-        synchronized (this.mySqlConnection) {
+    // 还没有写入数据库的启用、禁用，比数据库中的新时才使用
+    private @Nullable NameInfo withPending(@Nullable NameInfo info) {
+        if (info == null) return null;
+        final NameWriteBehind.Pending p = this.writeBehind.get(info.uuid());
+        if (p == null || p.time() < info.time()) return info;
+        return new NameInfo(info.uuid(), info.name(), p.time(), p.enable());
+    }
 
-            try {
-                final ChineseNameTable t = this.getTable();
+    void destroy() {
+        this.cache.clear();
+        this.nameFilter = null;
+    }
+
+
+    // 表结构迁移完成后 (uid1, uid2) 才是主键，之前不能使用ON DUPLICATE KEY
+    void setUniqueKeysReady(boolean ready) {
+        this.uniqueKeysReady = ready;
+    }
 
-                // 检查名字是否被注册
-                final NameInfo i = t.queryByName(info.name());
-                this.mySqlConnection.setLastUseTime();
+    // MySQL中只需要一条语句，其它数据库在一个事务中先更新再插入
+    // 返回null表示名字已经属于其它玩家，违反唯一约束也返回null
+    private @Nullable Boolean upsert(@NotNull NameInfo info) throws SQLException {
+        return this.source.execute(s -> {
+            final ChineseNameTable t = s.getNameTable();
 
-                if (i != null) {
-                    // 检查是不是自己
-                    if (!i.uuid().equals(info.uuid())) {
-                        throw new NameRegisteredException(i, "中文名[%s] 已被注册".formatted(i.name()));
-                    }
+            try {
+                if (this.uniqueKeysReady && s.getDialect() == Dialect.MYSQL) {
+                    final int affected = t.upsert(info);
+                    if (affected == 0) return null;
+                    if (affected == 1) return true;
+                    if (affected == 2) return false;
+                    throw new RuntimeException("插入或更新影响了%d行！".formatted(affected));
                 }
 
-                // 更新
-                final int updated = t.updateByUuid(info);
-                this.mySqlConnection.setLastUseTime();
+                return s.transaction(x -> {
+                    final int updated = t.updateByUuid(info);
+                    if (updated == 1) return false;
+                    if (updated != 0) throw new RuntimeException("根据一个UUID更新了%d条信息！".formatted(updated));
 
-                if (updated == 0) {
                     final int inserted = t.insert(info);
-                    this.mySqlConnection.setLastUseTime();
-
                     if (inserted != 1) throw new RuntimeException("插入了%d条数据！".formatted(inserted));
                     return true;
-                }
-
-                if (updated == 1) return false;
-
-                throw new RuntimeException("根据一个UUID更新了%d条信息！".formatted(updated));
+                });
             } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
-                }
+                // 名字是否已经被注册由数据库的唯一约束判断
+                if (s.getDialect().isConstraintViolation(e)) return null;
                 throw e;
             }
+        });
+    }
+
+    // 写入失败时缓存中的值可能已经不对，作废
+    private @Nullable Boolean upsertOrInvalidate(@NotNull NameInfo info) throws SQLException {
+        try {
+            return this.upsert(info);
+        } catch (SQLException | RuntimeException e) {
+            this.cache.invalidate(info.uuid());
+            throw e;
         }
     }
 
     @Override
-    public boolean removeName(@NotNull UUID uuid) throws SQLException {
-        synchronized (this.mySqlConnection) {
-            try {
-                final ChineseNameTable t = this.getTable();
+    public boolean addOrUpdateByUuid(@NotNull NameInfo info) throws SQLException, NameRegisteredException {
+        return this.metrics.<Boolean, SQLException, NameRegisteredException>time(
+                ServiceMetrics.Operation.NAME_ADD_OR_UPDATE, info.uuid(), () -> this.doAddOrUpdateByUuid(info));
+    }
 
-                final int deleted = t.deleteByUuid(uuid);
-                this.mySqlConnection.setLastUseTime();
+    private boolean doAddOrUpdateByUuid(@NotNull NameInfo info) throws SQLException, NameRegisteredException {
+        try (final StripedLocks.Held ignored = this.locks.lock(info.uuid(), info.name())) {
 
-                if (deleted == 1) return true;
-                if (deleted == 0) return false;
+            // 名字是否已经被注册由数据库的唯一约束判断，不需要先查询
+            Boolean added = this.upsertOrInvalidate(info);
 
-                throw new RuntimeException("删除了%d条数据！".formatted(deleted));
-            } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
+            if (added == null) {
+                // 不经过过滤器，名字可能是其它服务器注册的
+                final NameInfo owner = this.source.execute(s -> s.getNameTable().queryByName(info.name()));
+                if (owner != null && !owner.uuid().equals(info.uuid())) {
+                    this.addToNameFilter(owner.name());
+                    throw new NameRegisteredException(owner, "中文名[%s] 已被注册".formatted(owner.name()));
+                }
+
+                // 名字刚好被释放，再试一次
+                added = this.upsertOrInvalidate(info);
+                if (added == null) {
+                    this.cache.invalidate(info.uuid());
+                    throw new SQLException("中文名[%s] 写入冲突，请重试".formatted(info.name()));
                 }
+            }
+
+            this.addToNameFilter(info.name());
+            this.writeBehind.cancel(info.uuid());
+            this.cache.put(info.uuid(), info);
+            this.notifyChanged(info.uuid(), info);
+            return added;
+        }
+    }
+
+    @Override
+    public boolean removeName(@NotNull UUID uuid) throws SQLException {
+        return this.metrics.time(ServiceMetrics.Operation.NAME_REMOVE, uuid, () -> this.doRemoveName(uuid));
+    }
+
+    private boolean doRemoveName(@NotNull UUID uuid) throws SQLException {
+        try (final StripedLocks.Held ignored = this.locks.lock(uuid)) {
+            final int deleted;
+            try {
+                deleted = this.source.execute(s -> s.getNameTable().deleteByUuid(uuid));
+            } catch (SQLException e) {
+                this.cache.invalidate(uuid);
                 throw e;
             }
+
+            this.writeBehind.cancel(uuid);
+            this.cache.put(uuid, null);
+            if (deleted > 0) this.notifyChanged(uuid, null);
+
+            if (deleted == 1) return true;
+            if (deleted == 0) return false;
+
+            throw new RuntimeException("删除了%d条数据！".formatted(deleted));
         }
     }
 
+    // 批量导入后更新过滤器，缓存中的旧值作废
+    void onImported(@NotNull List<NameInfo> list) {
+        for (final NameInfo info : list) {
+            this.addToNameFilter(info.name());
+            this.cache.invalidate(info.uuid());
+            this.notifyChanged(info.uuid(), info);
+        }
+    }
+
+    // 玩家登录时预先加载，在线期间的查询都由缓存处理
+    // 登录前预加载到LRU缓存，不固定，登录前断开连接的玩家的条目会被正常淘汰
+    void warmUp(@NotNull UUID uuid) throws SQLException {
+        this.queryByUuid(uuid);
+    }
+
+    // 玩家进入服务器后固定缓存的条目，直到退出
+    // 返回false表示还没有缓存，需要调用queryByUuid加载
+    boolean startSession(@NotNull UUID uuid) {
+        return this.cache.startSession(uuid);
+    }
+
+    void endSession(@NotNull UUID uuid) {
+        this.cache.endSession(uuid);
+    }
+
+    // 只更新缓存，数据库由NameWriteBehind延迟批量写入
+    // 返回false表示没有中文名或者已经是这个状态
     @Override
-    public boolean toggleEnable(@NotNull UUID uuid, boolean enable) {
-        throw new UnsupportedOperationException("懒得实现，好像没有必要");
+    public boolean toggleEnable(@NotNull UUID uuid, boolean enable) throws SQLException {
+        return this.metrics.time(ServiceMetrics.Operation.NAME_TOGGLE_ENABLE, uuid, () -> this.doToggleEnable(uuid, enable));
+    }
+
+    private boolean doToggleEnable(@NotNull UUID uuid, boolean enable) throws SQLException {
+        try (final StripedLocks.Held ignored = this.locks.lock(uuid)) {
+            final NameInfo info = this.queryByUuid(uuid);
+            if (info == null || info.enable() == enable) return false;
+
+            // 其它服务器的时钟可能更快，time不能比数据库中的旧
+            final long time = Math.max(System.currentTimeMillis(), info.time());
+            this.writeBehind.offer(new NameWriteBehind.Pending(uuid, enable, time));
+            final NameInfo updated = new NameInfo(uuid, info.name(), time, enable);
+            this.cache.put(uuid, updated);
+            this.notifyChanged(uuid, updated);
+            return true;
+        }
     }
 
     @Override
     public @Nullable NameInfo queryByUuid(@NotNull UUID uuid) throws SQLException {
-        synchronized (this.mySqlConnection) {
+        return this.metrics.time(ServiceMetrics.Operation.NAME_QUERY_BY_UUID, uuid, () -> this.doQueryByUuid(uuid));
+    }
 
-            try {
-                final ChineseNameTable t = this.getTable();
+    private @Nullable NameInfo doQueryByUuid(@NotNull UUID uuid) throws SQLException {
+        // 命中缓存则不访问数据库
+        final NameCache.Entry entry = this.cache.get(uuid);
+        if (entry != null) return entry.info();
 
-                final NameInfo nameInfo = t.queryByUuid(uuid);
-                this.mySqlConnection.setLastUseTime();
+        final NameInfo nameInfo = this.withPending(this.source.execute(s -> s.getNameTable().queryByUuid(uuid)));
 
-                return nameInfo;
-            } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
-                }
-                throw e;
+        // 查询期间如果有写入，以写入的结果为准
+        return this.cache.putIfAbsent(uuid, nameInfo);
+    }
+
+    // 批量查询，先查缓存，未命中的分批从数据库查询并写入缓存
+    // 没有中文名的玩家不在结果中
+    public @NotNull Map<UUID, NameInfo> queryByUuids(@NotNull Collection<UUID> uuids) throws SQLException {
+        return this.metrics.time(ServiceMetrics.Operation.NAME_QUERY_BY_UUIDS, () -> this.doQueryByUuids(uuids));
+    }
+
+    private @NotNull Map<UUID, NameInfo> doQueryByUuids(@NotNull Collection<UUID> uuids) throws SQLException {
+        final HashMap<UUID, NameInfo> result = new HashMap<>();
+        final LinkedHashSet<UUID> missed = new LinkedHashSet<>();
+
+        for (final UUID uuid : uuids) {
+            final NameCache.Entry entry = this.cache.get(uuid);
+            if (entry == null) {
+                missed.add(uuid);
+                continue;
             }
+            if (entry.info() != null) result.put(uuid, entry.info());
+        }
+
+        if (missed.isEmpty()) return result;
+
+        final List<UUID> list = new ArrayList<>(missed);
+        final Map<UUID, NameInfo> loaded = this.source.execute(s -> s.getNameTable().queryByUuids(list));
+
+        for (final UUID uuid : list) {
+            final NameInfo info = this.cache.putIfAbsent(uuid, this.withPending(loaded.get(uuid)));
+            if (info != null) result.put(uuid, info);
         }
+
+        return result;
     }
 
     @Override
     public @Nullable NameInfo queryByName(@NotNull String name) throws SQLException {
-        synchronized (this.mySqlConnection) {
+        return this.metrics.time(ServiceMetrics.Operation.NAME_QUERY_BY_NAME, () -> this.doQueryByName(name));
+    }
 
-            try {
-                final ChineseNameTable t;
-                t = this.getTable();
+    private @Nullable NameInfo doQueryByName(@NotNull String name) throws SQLException {
+        // 其它插件使用这个结果判断名字有没有被注册，不能使用可能过时的过滤器
+        return this.withPending(this.source.execute(s -> s.getNameTable().queryByName(name)));
+    }
 
-                final NameInfo nameInfo = t.queryByName(name);
-                this.mySqlConnection.setLastUseTime();
+    // 命中缓存时立即完成
+    public @NotNull CompletableFuture<NameInfo> queryByUuidAsync(@NotNull UUID uuid) {
+        final NameCache.Entry entry = this.cache.get(uuid);
+        if (entry != null) return CompletableFuture.completedFuture(entry.info());
+        return this.asyncExecutor.supply(() -> this.queryByUuid(uuid));
+    }
 
-                return nameInfo;
-            } catch (SQLException e) {
-                try {
-                    this.mySqlConnection.handleException(e);
-                } catch (SQLException ignored) {
-                }
-                throw e;
-            }
-        }
+    public @NotNull CompletableFuture<Map<UUID, NameInfo>> queryByUuidsAsync(@NotNull Collection<UUID> uuids) {
+        final List<UUID> copy = new ArrayList<>(uuids);
+        return this.asyncExecutor.supply(() -> this.queryByUuids(copy));
+    }
+
+    public @NotNull CompletableFuture<NameInfo> queryByNameAsync(@NotNull String name) {
+        return this.asyncExecutor.supply(() -> this.queryByName(name));
+    }
+
+    public @NotNull CompletableFuture<Boolean> addOrUpdateByUuidAsync(@NotNull NameInfo info) {
+        return this.asyncExecutor.supply(() -> this.addOrUpdateByUuid(info));
+    }
+
+    public @NotNull CompletableFuture<Boolean> toggleEnableAsync(@NotNull UUID uuid, boolean enable) {
+        return this.asyncExecutor.supply(() -> this.toggleEnable(uuid, enable));
+    }
+
+    public @NotNull CompletableFuture<Boolean> removeNameAsync(@NotNull UUID uuid) {
+        return this.asyncExecutor.supply(() -> this.removeName(uuid));
     }
 }
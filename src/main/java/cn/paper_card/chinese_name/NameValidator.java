@@ -0,0 +1,107 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// 按码点检查中文名，扩展区的汉字（代理对）也算一个字
+// 检查时不分配任何对象
+class NameValidator {
+
+    static final @NotNull List<String> DEFAULT_RANGES = List.of("4E00-9FA5");
+
+    static final @NotNull NameValidator DEFAULT = new NameValidator(new int[]{0x4E00, 0x9FA5}, 2, 4);
+
+    // 排序且不重叠的闭区间，[start0, end0, start1, end1, ...]
+    private final int @NotNull [] ranges;
+
+    private final int minLength;
+
+    private final int maxLength;
+
+    private NameValidator(int @NotNull [] ranges, int minLength, int maxLength) {
+        this.ranges = ranges;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    // 区间格式：4E00-9FA5 或者单个码点 3007，十六进制
+    static @NotNull NameValidator parse(@NotNull List<String> ranges, int minLength, int maxLength) {
+        if (minLength < 1 || maxLength < minLength)
+            throw new IllegalArgumentException("不正确的长度范围：%d~%d".formatted(minLength, maxLength));
+
+        final ArrayList<int[]> list = new ArrayList<>();
+        for (final String range : ranges) {
+            final String r = range.trim().toUpperCase(Locale.ROOT);
+            final int i = r.indexOf('-');
+
+            final int start, end;
+            try {
+                start = Integer.parseInt(i < 0 ? r : r.substring(0, i).trim(), 16);
+                end = i < 0 ? start : Integer.parseInt(r.substring(i + 1).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("不正确的字符区间：" + range, e);
+            }
+
+            if (start > end || !Character.isValidCodePoint(end))
+                throw new IllegalArgumentException("不正确的字符区间：" + range);
+
+            list.add(new int[]{start, end});
+        }
+
+        if (list.isEmpty()) throw new IllegalArgumentException("没有配置允许的字符区间");
+
+        // 排序并合并重叠的区间
+        list.sort((a, b) -> Integer.compare(a[0], b[0]));
+        final int[] merged = new int[list.size() * 2];
+        int n = 0;
+        for (final int[] r : list) {
+            if (n > 0 && r[0] <= merged[n - 1] + 1) {
+                merged[n - 1] = Math.max(merged[n - 1], r[1]);
+                continue;
+            }
+            merged[n++] = r[0];
+            merged[n++] = r[1];
+        }
+
+        return new NameValidator(Arrays.copyOf(merged, n), minLength, maxLength);
+    }
+
+    int getMinLength() {
+        return this.minLength;
+    }
+
+    int getMaxLength() {
+        return this.maxLength;
+    }
+
+    boolean isAllowed(int codePoint) {
+        // 二分查找最后一个 start <= codePoint 的区间
+        int lo = 0, hi = this.ranges.length / 2 - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (this.ranges[mid * 2] <= codePoint) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return hi >= 0 && codePoint <= this.ranges[hi * 2 + 1];
+    }
+
+    boolean isValid(@NotNull String name) {
+        final int len = name.length();
+
+        // 每个码点最多两个char，明显超长时不需要逐个检查
+        if (len < this.minLength || len > this.maxLength * 2) return false;
+
+        int count = 0;
+        for (int i = 0; i < len; ) {
+            final int cp = name.codePointAt(i);
+            if (!this.isAllowed(cp)) return false;
+            if (++count > this.maxLength) return false;
+            i += Character.charCount(cp);
+        }
+        return count >= this.minLength;
+    }
+}
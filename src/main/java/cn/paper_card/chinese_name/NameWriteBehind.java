@@ -0,0 +1,99 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+// 延迟写入不重要的更新（启用、禁用中文名），同一个UUID只保留最后一次
+// 定时或者积累到一定数量时在一条批量语句中写入，失败的留到下一次
+// 写入时只更新time不比它新的行，不会覆盖之后直接写入的结果
+class NameWriteBehind {
+
+    record Pending(@NotNull UUID uuid, boolean enable, long time) {
+    }
+
+    private final @NotNull SessionSource source;
+
+    private final @NotNull AsyncExecutor asyncExecutor;
+
+    private final @NotNull ConcurrentHashMap<UUID, Pending> pending = new ConcurrentHashMap<>();
+
+    // 同一时间只有一个线程写入
+    private final @NotNull Object flushLock = new Object();
+
+    private final @NotNull AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private volatile int maxPending = 256;
+
+    // 报告异步写入的异常，和定时写入一样交给插件记录
+    private volatile @Nullable BiConsumer<String, Throwable> errorHandler = null;
+
+    NameWriteBehind(@NotNull SessionSource source, @NotNull AsyncExecutor asyncExecutor) {
+        this.source = source;
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    void setMaxPending(int maxPending) {
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    void setErrorHandler(@Nullable BiConsumer<String, Throwable> handler) {
+        this.errorHandler = handler;
+    }
+
+    int size() {
+        return this.pending.size();
+    }
+
+    // 数量达到上限时提交一次异步写入
+    void offer(@NotNull Pending p) {
+        this.pending.put(p.uuid(), p);
+
+        if (this.pending.size() < this.maxPending) return;
+        if (!this.flushScheduled.compareAndSet(false, true)) return;
+
+        // 队列已满时由定时任务写入
+        this.asyncExecutor.supply(() -> {
+            try {
+                return this.flush();
+            } finally {
+                this.flushScheduled.set(false);
+            }
+        }).exceptionally(e -> {
+            this.flushScheduled.set(false);
+            final BiConsumer<String, Throwable> handler = this.errorHandler;
+            if (handler != null) handler.accept("flush pending name updates (queue full)", e);
+            return 0;
+        });
+    }
+
+    @Nullable Pending get(@NotNull UUID uuid) {
+        return this.pending.get(uuid);
+    }
+
+    // 直接写入了更新的值，不再需要延迟的更新
+    void cancel(@NotNull UUID uuid) {
+        this.pending.remove(uuid);
+    }
+
+    // 返回写入的数量
+    int flush() throws SQLException {
+        synchronized (this.flushLock) {
+            if (this.pending.isEmpty()) return 0;
+
+            final List<Pending> list = new ArrayList<>(this.pending.values());
+            this.source.execute(s -> s.transaction(x -> x.getNameTable().updateEnableBatch(list)));
+
+            // 写入期间又有更新的保留
+            for (final Pending p : list) this.pending.remove(p.uuid(), p);
+            return list.size();
+        }
+    }
+}
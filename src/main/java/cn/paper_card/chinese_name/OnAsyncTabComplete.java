@@ -0,0 +1,33 @@
+package cn.paper_card.chinese_name;
+
+import com.destroystokyo.paper.event.server.AsyncTabCompleteEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+// 在异步线程中补全玩家名，避免玩家很多时卡主线程
+class OnAsyncTabComplete implements Listener {
+
+    private final @NotNull ThePlugin plugin;
+
+    OnAsyncTabComplete(@NotNull ThePlugin plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    @EventHandler
+    public void onTabComplete(@NotNull AsyncTabCompleteEvent event) {
+        if (event.isHandled() || !event.isCommand()) return;
+
+        final MyCommand command = this.plugin.getMyCommand();
+        if (command == null) return;
+
+        final List<String> list = command.completeAsync(event.getSender(), event.getBuffer());
+        if (list == null) return;
+
+        event.setCompletions(list);
+        event.setHandled(true);
+    }
+}
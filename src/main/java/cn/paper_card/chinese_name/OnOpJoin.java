@@ -1,11 +1,5 @@
 package cn.paper_card.chinese_name;
 
-import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.TextComponent;
-import net.kyori.adventure.text.event.ClickEvent;
-import net.kyori.adventure.text.event.HoverEvent;
-import net.kyori.adventure.text.format.NamedTextColor;
-import net.kyori.adventure.text.format.TextDecoration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -39,7 +33,7 @@ class OnOpJoin implements Listener {
             final int count;
 
             try {
-                count = api.getApplicationService().queryCount();
+                count = api.getApplicationService().getPendingCount();
             } catch (SQLException e) {
                 plugin.getSLF4JLogger().error("", e);
                 plugin.sendException(player, e);
@@ -47,19 +41,7 @@ class OnOpJoin implements Listener {
             }
 
             if (count > 0) {
-                final TextComponent.Builder text = Component.text();
-                plugin.appendPrefix(text);
-                text.appendSpace();
-                text.append(Component.text("当前有"));
-                text.append(Component.text(count).color(NamedTextColor.RED));
-                text.append(Component.text("个中文名申请未处理 "));
-                text.append(Component.text("[点击查看]")
-                        .color(NamedTextColor.GRAY).decorate(TextDecoration.UNDERLINED)
-                        .clickEvent(ClickEvent.runCommand("/ch-name app-list"))
-                        .hoverEvent(HoverEvent.showText(Component.text("点击查看")))
-                );
-
-                player.sendMessage(text.build().color(NamedTextColor.YELLOW));
+                player.sendMessage(plugin.getMessages().render(Messages.Key.OP_JOIN_PENDING, count));
             }
         });
 
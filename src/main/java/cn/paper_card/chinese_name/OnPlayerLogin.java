@@ -0,0 +1,69 @@
+package cn.paper_card.chinese_name;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.UUID;
+
+// 登录前只预热缓存，进入服务器后才固定缓存条目，退出时释放
+// 登录前断开的连接不会触发进入和退出事件，所以不能在登录前固定
+class OnPlayerLogin implements Listener {
+
+    private final @NotNull ThePlugin plugin;
+
+    OnPlayerLogin(@NotNull ThePlugin plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+
+        // 重载插件时已经在线的玩家
+        for (final Player player : plugin.getServer().getOnlinePlayers()) {
+            this.startSession(player.getUniqueId());
+        }
+    }
+
+    private void load(@NotNull UUID uuid, @NotNull String from) {
+        final ChineseNameApiImpl api = this.plugin.getChineseNameApi();
+        if (api == null) return;
+
+        try {
+            api.getNameService().warmUp(uuid);
+        } catch (SQLException e) {
+            this.plugin.handleException(from + " -> name service -> warm up", e);
+        }
+    }
+
+    private void startSession(@NotNull UUID uuid) {
+        final ChineseNameApiImpl api = this.plugin.getChineseNameApi();
+        if (api == null) return;
+
+        // 预加载的条目已经被淘汰时，在异步线程中重新加载
+        if (api.getNameService().startSession(uuid)) return;
+        this.plugin.getTaskScheduler().runTaskAsynchronously(() -> this.load(uuid, "join"));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(@NotNull AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        this.load(event.getUniqueId(), "pre login");
+    }
+
+    // 在NameRenderer之前固定，NameRenderer读取缓存
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(@NotNull PlayerJoinEvent event) {
+        this.startSession(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(@NotNull PlayerQuitEvent event) {
+        final ChineseNameApiImpl api = this.plugin.getChineseNameApi();
+        if (api == null) return;
+        api.getNameService().endSession(event.getPlayer().getUniqueId());
+    }
+}
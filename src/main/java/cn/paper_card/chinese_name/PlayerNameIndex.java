@@ -0,0 +1,121 @@
+package cn.paper_card.chinese_name;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// 玩家名 <-> UUID 的索引，玩家名不区分大小写
+// 启动时异步从离线玩家列表构建一次，之后在玩家加入时更新
+class PlayerNameIndex implements Listener {
+
+    private final @NotNull ThePlugin plugin;
+
+    // 小写的玩家名 -> UUID
+    private final @NotNull ConcurrentHashMap<String, UUID> byName = new ConcurrentHashMap<>();
+
+    private final @NotNull ConcurrentHashMap<UUID, String> byUuid = new ConcurrentHashMap<>();
+
+    // 按小写玩家名排序，用于前缀补全，值为原始大小写的玩家名
+    private final @NotNull ConcurrentSkipListMap<String, String> sorted = new ConcurrentSkipListMap<>();
+
+    private volatile boolean ready = false;
+
+    PlayerNameIndex(@NotNull ThePlugin plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    private static @NotNull String key(@NotNull String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    void buildAsync() {
+        this.plugin.getTaskScheduler().runTaskAsynchronously(this::build);
+    }
+
+    private void build() {
+        final long begin = System.currentTimeMillis();
+
+        // 改过名的玩家可能导致重名，保留最近上线的
+        final HashMap<String, Long> lastSeen = new HashMap<>();
+
+        for (final OfflinePlayer offlinePlayer : this.plugin.getServer().getOfflinePlayers()) {
+            final String name = offlinePlayer.getName();
+            if (name == null) continue;
+
+            final UUID uuid = offlinePlayer.getUniqueId();
+            final String key = key(name);
+            final long seen = offlinePlayer.getLastSeen();
+
+            // 加入事件已经写入的更新
+            if (this.byUuid.putIfAbsent(uuid, name) != null) continue;
+
+            final Long old = lastSeen.get(key);
+            if (old != null && old >= seen) continue;
+            lastSeen.put(key, seen);
+
+            if (old == null) {
+                if (this.byName.putIfAbsent(key, uuid) == null) this.sorted.put(key, name);
+            } else {
+                this.byName.put(key, uuid);
+                this.sorted.put(key, name);
+            }
+        }
+
+        this.ready = true;
+
+        this.plugin.getSLF4JLogger().info("玩家名索引构建完成，共%d个玩家，耗时%dms".formatted(
+                this.byUuid.size(), System.currentTimeMillis() - begin));
+    }
+
+    void put(@NotNull UUID uuid, @NotNull String name) {
+        final String old = this.byUuid.put(uuid, name);
+        if (old != null && !old.equals(name) && this.byName.remove(key(old), uuid)) {
+            this.sorted.remove(key(old));
+        }
+        final String key = key(name);
+        this.byName.put(key, uuid);
+        this.sorted.put(key, name);
+    }
+
+    // 索引还没有构建完成时返回false
+    boolean isReady() {
+        return this.ready;
+    }
+
+    @Nullable UUID getUuid(@NotNull String name) {
+        return this.byName.get(key(name));
+    }
+
+    @Nullable String getName(@NotNull UUID uuid) {
+        return this.byUuid.get(uuid);
+    }
+
+    // 前缀不区分大小写，最多返回limit个
+    @NotNull List<String> complete(@NotNull String prefix, int limit) {
+        final String key = key(prefix);
+        final ArrayList<String> list = new ArrayList<>(Math.min(limit, 16));
+
+        for (final Map.Entry<String, String> entry : this.sorted.tailMap(key, true).entrySet()) {
+            if (list.size() >= limit) break;
+            if (!entry.getKey().startsWith(key)) break;
+            list.add(entry.getValue());
+        }
+        return list;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(@NotNull PlayerJoinEvent event) {
+        final Player player = event.getPlayer();
+        this.put(player.getUniqueId(), player.getName());
+    }
+}
@@ -0,0 +1,235 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.database.api.Parser;
+import cn.paper_card.database.api.Util;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.sql.*;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+// 按版本号顺序执行的表结构迁移，已执行的版本记录在 chinese_name_schema 表中
+class SchemaMigrator {
+
+    private static final String TABLE_NAME = "chinese_name_schema";
+
+    private static final String LOCK_NAME = "chinese_name_schema";
+
+    interface Step {
+        void apply(@NotNull Connection connection, @NotNull Dialect dialect) throws SQLException;
+    }
+
+    record Migration(int version, @NotNull String description, @NotNull Step step) {
+    }
+
+    private final @NotNull List<Migration> migrations;
+
+    // 记录迁移中删除或者保留的数据
+    private final @Nullable Logger logger;
+
+    SchemaMigrator() {
+        this(null);
+    }
+
+    SchemaMigrator(@Nullable Logger logger) {
+        this.logger = logger;
+        this.migrations = List.of(
+                new Migration(1, "chinese_name 添加主键(uid1, uid2)和名字的覆盖索引", this::migrateNameKeys),
+                new Migration(2, "chinese_name_app 添加(uid1, uid2)和(time, id)索引", SchemaMigrator::migrateApplicationIndexes),
+                new Migration(3, "chinese_name_app 的(uid1, uid2)改为唯一键", this::migrateApplicationUniqueUuid)
+        );
+    }
+
+    private void warn(@NotNull String msg) {
+        if (this.logger != null) this.logger.warn(msg);
+    }
+
+    private static void createTable(@NotNull Connection connection) throws SQLException {
+        Util.executeSQL(connection, """
+                CREATE TABLE IF NOT EXISTS %s (
+                    version     INT NOT NULL PRIMARY KEY,
+                    description VARCHAR(255) NOT NULL,
+                    time        BIGINT NOT NULL
+                )""".formatted(TABLE_NAME));
+    }
+
+    private static int queryVersion(@NotNull Connection connection) throws SQLException {
+        try (final Statement statement = connection.createStatement()) {
+            final ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM %s".formatted(TABLE_NAME));
+            return Parser.parseOneInt(resultSet);
+        }
+    }
+
+    private static void insertVersion(@NotNull Connection connection, @NotNull Migration migration) throws SQLException {
+        try (final PreparedStatement ps = connection.prepareStatement
+                ("INSERT INTO %s (version, description, time) VALUES (?, ?, ?)".formatted(TABLE_NAME))) {
+            ps.setInt(1, migration.version());
+            ps.setString(2, migration.description());
+            ps.setLong(3, System.currentTimeMillis());
+            ps.executeUpdate();
+        }
+    }
+
+    // 多个服务器共用一个数据库时，同一时间只能有一个服务器执行迁移
+    private static void lock(@NotNull Connection connection, @NotNull Dialect dialect) throws SQLException {
+        if (dialect != Dialect.MYSQL) return;
+        try (final PreparedStatement ps = connection.prepareStatement("SELECT GET_LOCK(?, 600)")) {
+            ps.setString(1, LOCK_NAME);
+            final ResultSet resultSet = ps.executeQuery();
+            if (Parser.parseOneInt(resultSet) != 1) throw new SQLException("无法获取表结构迁移锁");
+        }
+    }
+
+    private static void unlock(@NotNull Connection connection, @NotNull Dialect dialect) throws SQLException {
+        if (dialect != Dialect.MYSQL) return;
+        try (final PreparedStatement ps = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        }
+    }
+
+    // 返回执行了的迁移
+    @NotNull List<Migration> migrate(@NotNull Connection connection) throws SQLException {
+        final Dialect dialect = Dialect.of(connection);
+        final LinkedList<Migration> applied = new LinkedList<>();
+
+        createTable(connection);
+
+        lock(connection, dialect);
+        try {
+            final int current = queryVersion(connection);
+
+            for (final Migration migration : this.migrations) {
+                if (migration.version() <= current) continue;
+
+                migration.step().apply(connection, dialect);
+                insertVersion(connection, migration);
+                applied.add(migration);
+            }
+        } finally {
+            unlock(connection, dialect);
+        }
+
+        return applied;
+    }
+
+    // H2等数据库的元数据中表名可能是大写
+    private static boolean hasPrimaryKey(@NotNull Connection connection, @NotNull String table) throws SQLException {
+        final DatabaseMetaData metaData = connection.getMetaData();
+        for (final String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (final ResultSet resultSet = metaData.getPrimaryKeys(connection.getCatalog(), null, name)) {
+                if (resultSet.next()) return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean hasIndex(@NotNull Connection connection, @NotNull String table, @NotNull String index) throws SQLException {
+        final DatabaseMetaData metaData = connection.getMetaData();
+        for (final String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (final ResultSet resultSet = metaData.getIndexInfo(connection.getCatalog(), null, name, false, false)) {
+                while (resultSet.next()) {
+                    if (index.equalsIgnoreCase(resultSet.getString("INDEX_NAME"))) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void migrateNameKeys(@NotNull Connection connection, @NotNull Dialect dialect) throws SQLException {
+        if (!hasPrimaryKey(connection, "chinese_name")) {
+            // 同一个UUID有多条记录时只保留最新的一条，否则无法添加主键
+            // 删除前把要删除的记录写到日志中
+            try (final Statement statement = connection.createStatement()) {
+                final ResultSet resultSet = statement.executeQuery("""
+                        SELECT a.uid1, a.uid2, a.name, a.time, a.enable FROM chinese_name a
+                        WHERE EXISTS (
+                            SELECT 1 FROM chinese_name b
+                            WHERE b.uid1 = a.uid1 AND b.uid2 = a.uid2
+                                AND (a.time < b.time OR (a.time = b.time AND a.name > b.name))
+                        )""");
+                while (resultSet.next()) {
+                    this.warn("表结构迁移：删除重复的中文名 {uuid: %s, name: %s, time: %d, enable: %b}".formatted(
+                            new UUID(resultSet.getLong(1), resultSet.getLong(2)), resultSet.getString(3),
+                            resultSet.getLong(4), resultSet.getBoolean(5)));
+                }
+            }
+
+            if (dialect == Dialect.MYSQL) {
+                Util.executeSQL(connection, """
+                        DELETE a FROM chinese_name a
+                        JOIN chinese_name b ON a.uid1 = b.uid1 AND a.uid2 = b.uid2
+                            AND (a.time < b.time OR (a.time = b.time AND a.name > b.name))""");
+            } else {
+                Util.executeSQL(connection, """
+                        DELETE FROM chinese_name
+                        WHERE EXISTS (
+                            SELECT 1 FROM chinese_name b
+                            WHERE b.uid1 = chinese_name.uid1 AND b.uid2 = chinese_name.uid2
+                                AND (chinese_name.time < b.time OR (chinese_name.time = b.time AND chinese_name.name > b.name))
+                        )""");
+            }
+
+            Util.executeSQL(connection, "ALTER TABLE chinese_name ADD PRIMARY KEY (uid1, uid2)" + dialect.onlineDdl(true));
+        }
+
+        if (!hasIndex(connection, "chinese_name", "idx_name_cover")) {
+            Util.executeSQL(connection, "CREATE INDEX idx_name_cover ON chinese_name (name, uid1, uid2, time, enable)" + dialect.onlineDdl(false));
+        }
+    }
+
+    private static void migrateApplicationIndexes(@NotNull Connection connection, @NotNull Dialect dialect) throws SQLException {
+        if (!hasIndex(connection, "chinese_name_app", "idx_uuid")) {
+            Util.executeSQL(connection, "CREATE INDEX idx_uuid ON chinese_name_app (uid1, uid2)" + dialect.onlineDdl(false));
+        }
+
+        if (!hasIndex(connection, "chinese_name_app", "idx_time_id")) {
+            Util.executeSQL(connection, "CREATE INDEX idx_time_id ON chinese_name_app (time, id)" + dialect.onlineDdl(false));
+        }
+    }
+
+    private void migrateApplicationUniqueUuid(@NotNull Connection connection, @NotNull Dialect dialect) throws SQLException {
+        if (!hasIndex(connection, "chinese_name_app", "uk_uuid")) {
+            // 同一个UUID有多条申请时无法添加唯一键
+            // 每条申请都已经扣除了电池，不能直接删除，需要管理员拒绝多余的申请（会返还电池）
+            final StringBuilder ids = new StringBuilder();
+            try (final Statement statement = connection.createStatement()) {
+                final ResultSet resultSet = statement.executeQuery("""
+                        SELECT a.id, a.uid1, a.uid2, a.name, a.coins FROM chinese_name_app a
+                        WHERE EXISTS (
+                            SELECT 1 FROM chinese_name_app b
+                            WHERE b.uid1 = a.uid1 AND b.uid2 = a.uid2 AND b.id < a.id
+                        )
+                        ORDER BY a.id""");
+                while (resultSet.next()) {
+                    final int id = resultSet.getInt(1);
+                    this.warn("表结构迁移：重复的中文名申请 {id: %d, uuid: %s, name: %s, coins: %d}".formatted(
+                            id, new UUID(resultSet.getLong(2), resultSet.getLong(3)),
+                            resultSet.getString(4), resultSet.getLong(5)));
+                    if (!ids.isEmpty()) ids.append(", ");
+                    ids.append(id);
+                }
+            }
+
+            if (!ids.isEmpty()) {
+                throw new SQLException(("chinese_name_app 中有重复的申请，ID: %s，" +
+                        "请使用 /ch-name reject <申请ID> 拒绝多余的申请并返还电池，然后重启服务器完成迁移").formatted(ids));
+            }
+
+            Util.executeSQL(connection, "CREATE UNIQUE INDEX uk_uuid ON chinese_name_app (uid1, uid2)" + dialect.onlineDdl(false));
+        }
+
+        // 唯一键已经覆盖了原来的索引
+        if (hasIndex(connection, "chinese_name_app", "idx_uuid")) {
+            if (dialect == Dialect.MYSQL) {
+                Util.executeSQL(connection, "DROP INDEX idx_uuid ON chinese_name_app" + dialect.onlineDdl(false));
+            } else {
+                Util.executeSQL(connection, "DROP INDEX idx_uuid");
+            }
+        }
+    }
+}
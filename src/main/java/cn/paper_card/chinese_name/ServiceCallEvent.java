@@ -0,0 +1,34 @@
+package cn.paper_card.chinese_name;
+
+import jdk.jfr.*;
+
+// 一次服务调用，嵌套的调用计入最外层
+// 没有开启JFR记录时不会创建
+@Name("cn.paper_card.chinese_name.ServiceCall")
+@Label("Chinese Name Service Call")
+@Category({"ChineseName"})
+@Description("中文名服务的一次调用")
+@StackTrace(false)
+class ServiceCallEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    // UUID的哈希值，不记录完整的UUID
+    @Label("UUID Hash")
+    int uuidHash;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Lock Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long lockWait;
+
+    @Label("SQL Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long sqlTime;
+
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,223 @@
+package cn.paper_card.chinese_name;
+
+import jdk.jfr.EventType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+// 服务调用的次数、结果和延迟
+// 每次调用分别记录总耗时、等待锁（条带锁和数据库连接）的时间和执行SQL的时间
+// 开启JFR记录时每次调用还会产生一个ServiceCallEvent
+class ServiceMetrics {
+
+    private static final EventType CALL_EVENT = EventType.getEventType(ServiceCallEvent.class);
+
+    enum Operation {
+        NAME_QUERY_BY_UUID("name.queryByUuid"),
+        NAME_QUERY_BY_UUIDS("name.queryByUuids"),
+        NAME_QUERY_BY_NAME("name.queryByName"),
+        NAME_ADD_OR_UPDATE("name.addOrUpdateByUuid"),
+        NAME_REMOVE("name.removeName"),
+        NAME_TOGGLE_ENABLE("name.toggleEnable"),
+        APP_ADD("app.add"),
+        APP_TAKE_BY_ID("app.takeById"),
+        APP_TAKE_BY_UUID("app.takeByUuid"),
+        APP_QUERY_BY_NAME("app.queryByName"),
+        APP_QUERY_WITH_PAGE("app.queryWithPage"),
+        APP_QUERY_AFTER("app.queryAfter"),
+        APP_QUERY_BEFORE("app.queryBefore"),
+        APP_QUERY_COUNT("app.queryCount");
+
+        private final @NotNull String label;
+
+        Operation(@NotNull String label) {
+            this.label = label;
+        }
+
+        @NotNull String getLabel() {
+            return this.label;
+        }
+    }
+
+    enum Outcome {
+        OK,
+        // 业务上的拒绝，例如名字已被注册
+        REJECTED,
+        ERROR
+    }
+
+    record OperationSnapshot(@NotNull Operation operation, long calls, long rejected, long errors,
+                             long meanNanos, long p50Nanos, long p99Nanos, long maxNanos,
+                             long lockWaitP99Nanos, long sqlP99Nanos) {
+    }
+
+    private static class Stats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyHistogram lockWait = new LatencyHistogram();
+        private final LatencyHistogram sql = new LatencyHistogram();
+    }
+
+    // 当前线程正在进行的服务调用，嵌套的调用计入最外层
+    static class Call {
+        private ServiceMetrics metrics = null;
+        private Operation operation = null;
+        private int depth = 0;
+        private long start;
+        private long lockWait;
+        private long sql;
+        private int rows;
+        private int uuidHash;
+        private Outcome outcome;
+        private @Nullable ServiceCallEvent event;
+
+        // 在catch中调用
+        void fail(@NotNull Throwable e) {
+            if (this.depth != 1) return;
+            this.outcome = e instanceof SQLException || e instanceof RuntimeException || e instanceof Error
+                    ? Outcome.ERROR : Outcome.REJECTED;
+        }
+
+        // 在finally中调用
+        void end() {
+            if (--this.depth > 0) return;
+            final ServiceMetrics m = this.metrics;
+            this.metrics = null;
+            m.record(this.operation, this.outcome, System.nanoTime() - this.start, this.lockWait, this.sql);
+
+            final ServiceCallEvent e = this.event;
+            if (e == null) return;
+            this.event = null;
+
+            e.end();
+            if (!e.shouldCommit()) return;
+            e.operation = this.operation.getLabel();
+            e.uuidHash = this.uuidHash;
+            e.rows = this.rows;
+            e.lockWait = this.lockWait;
+            e.sqlTime = this.sql;
+            e.outcome = this.outcome.name();
+            e.commit();
+        }
+    }
+
+    private static final ThreadLocal<Call> CURRENT = ThreadLocal.withInitial(Call::new);
+
+    private final @NotNull EnumMap<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    ServiceMetrics() {
+        for (final Operation op : Operation.values()) this.stats.put(op, new Stats());
+    }
+
+    @NotNull Call begin(@NotNull Operation operation) {
+        return this.begin(operation, null);
+    }
+
+    // 被记录的服务调用的实现，E1、E2为可能抛出的受检异常
+    // 只抛出一种时两个都推断为这一种；抛出两种时需要写出类型参数，否则都会被推断为Exception
+    interface Body<T, E1 extends Exception, E2 extends Exception> {
+        T run() throws E1, E2;
+    }
+
+    <T, E1 extends Exception, E2 extends Exception> T time(@NotNull Operation operation, @NotNull Body<T, E1, E2> body) throws E1, E2 {
+        return this.time(operation, null, body);
+    }
+
+    // 记录一次服务调用的耗时和结果
+    // 会抛出三种以上受检异常的（例如提交申请）直接使用begin、Call.fail和Call.end
+    <T, E1 extends Exception, E2 extends Exception> T time(@NotNull Operation operation, @Nullable UUID uuid,
+                                                           @NotNull Body<T, E1, E2> body) throws E1, E2 {
+        final Call call = this.begin(operation, uuid);
+        try {
+            return body.run();
+        } catch (Throwable e) {
+            call.fail(e);
+            throw e;
+        } finally {
+            call.end();
+        }
+    }
+
+    // uuid: 调用针对的玩家，只用于JFR事件
+    @NotNull Call begin(@NotNull Operation operation, @Nullable UUID uuid) {
+        final Call call = CURRENT.get();
+        if (call.depth++ > 0) return call;
+
+        call.metrics = this;
+        call.operation = operation;
+        call.start = System.nanoTime();
+        call.lockWait = 0;
+        call.sql = 0;
+        call.rows = 0;
+        call.uuidHash = uuid != null ? uuid.hashCode() : 0;
+        call.outcome = Outcome.OK;
+
+        // 没有开启记录时不创建事件
+        if (CALL_EVENT.isEnabled()) {
+            call.event = new ServiceCallEvent();
+            call.event.begin();
+        }
+        return call;
+    }
+
+    // 不在服务调用中时忽略
+    static void addLockWait(long nanos) {
+        final Call call = CURRENT.get();
+        if (call.depth > 0) call.lockWait += nanos;
+    }
+
+    static void addSql(long nanos) {
+        final Call call = CURRENT.get();
+        if (call.depth > 0) call.sql += nanos;
+    }
+
+    // 语句返回或者影响的行数
+    static void addRows(int rows) {
+        final Call call = CURRENT.get();
+        if (call.depth > 0) call.rows += rows;
+    }
+
+    private void record(@NotNull Operation operation, @NotNull Outcome outcome, long total, long lockWait, long sql) {
+        final Stats s = this.stats.get(operation);
+        s.calls.increment();
+        if (outcome == Outcome.REJECTED) s.rejected.increment();
+        else if (outcome == Outcome.ERROR) s.errors.increment();
+        s.total.record(total);
+        s.lockWait.record(lockWait);
+        s.sql.record(sql);
+    }
+
+    // 只包括调用过的操作
+    @NotNull List<OperationSnapshot> snapshot() {
+        final ArrayList<OperationSnapshot> list = new ArrayList<>();
+        for (final Operation op : Operation.values()) {
+            final Stats s = this.stats.get(op);
+            final long calls = s.calls.sum();
+            if (calls == 0) continue;
+
+            list.add(new OperationSnapshot(op, calls, s.rejected.sum(), s.errors.sum(),
+                    s.total.getMean(), s.total.getPercentile(50), s.total.getPercentile(99), s.total.getMax(),
+                    s.lockWait.getPercentile(99), s.sql.getPercentile(99)));
+        }
+        return list;
+    }
+
+    void reset() {
+        for (final Stats s : this.stats.values()) {
+            s.calls.reset();
+            s.rejected.reset();
+            s.errors.reset();
+            s.total.reset();
+            s.lockWait.reset();
+            s.sql.reset();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+
+// 数据库会话的来源，acquire得到的会话在release之前只能由当前线程使用
+interface SessionSource {
+
+    @NotNull DbSession acquire() throws SQLException;
+
+    // e不为null表示使用会话时发生了异常
+    void release(@NotNull DbSession session, @Nullable SQLException e);
+
+    void close() throws SQLException;
+
+    // 等待连接的时间和执行的时间计入当前的服务调用
+    default <R> R execute(@NotNull SqlFunction<DbSession, R> function) throws SQLException {
+        final long begin = System.nanoTime();
+        final DbSession session = this.acquire();
+        final long acquired = System.nanoTime();
+        ServiceMetrics.addLockWait(acquired - begin);
+
+        SQLException exception = null;
+        try {
+            return function.apply(session);
+        } catch (SQLException e) {
+            exception = e;
+            throw e;
+        } finally {
+            ServiceMetrics.addSql(System.nanoTime() - acquired);
+            this.release(session, exception);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.database.api.DatabaseApi;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 使用Database插件提供的单个连接，同一时间只能有一个线程使用
+class SharedConnectionSource implements SessionSource {
+
+    private final @NotNull DatabaseApi.MySqlConnection mySqlConnection;
+
+    private final @NotNull ReentrantLock lock = new ReentrantLock();
+
+    private Connection connection = null;
+
+    private DbSession session = null;
+
+    // 最多每秒通知一次Database插件连接在使用
+    private static final long LAST_USE_INTERVAL = 1000;
+
+    // 需要持有锁
+    private long lastUseTime = 0;
+
+    SharedConnectionSource(@NotNull DatabaseApi.MySqlConnection mySqlConnection) {
+        this.mySqlConnection = mySqlConnection;
+    }
+
+    // 需要持有锁
+    private @NotNull DbSession getSession() throws SQLException {
+        final Connection newCon = this.mySqlConnection.getRawConnection();
+
+        if (this.connection != null && this.connection == newCon) return this.session;
+
+        // 连接已经改变，重新创建表对象
+        // 旧连接通常已经断开，关闭旧的预编译语句失败不影响新连接
+        final DbSession old = this.session;
+        this.connection = null;
+        this.session = null;
+        if (old != null) {
+            try {
+                old.close();
+            } catch (SQLException ignored) {
+            }
+        }
+
+        this.session = new DbSession(newCon);
+        this.connection = newCon;
+        return this.session;
+    }
+
+    @Override
+    public @NotNull DbSession acquire() throws SQLException {
+        this.lock.lock();
+        try {
+            return this.getSession();
+        } catch (SQLException e) {
+            try {
+                this.mySqlConnection.handleException(e);
+            } catch (SQLException ignored) {
+            }
+            this.lock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void release(@NotNull DbSession session, @Nullable SQLException e) {
+        try {
+            if (e == null) {
+                final long now = System.currentTimeMillis();
+                if (now - this.lastUseTime >= LAST_USE_INTERVAL) {
+                    this.lastUseTime = now;
+                    this.mySqlConnection.setLastUseTime();
+                }
+            } else {
+                try {
+                    this.mySqlConnection.handleException(e);
+                } catch (SQLException ignored) {
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        this.lock.lock();
+        try {
+            final DbSession s = this.session;
+            this.connection = null;
+            this.session = null;
+            if (s != null) s.close();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
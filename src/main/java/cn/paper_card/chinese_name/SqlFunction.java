@@ -0,0 +1,8 @@
+package cn.paper_card.chinese_name;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+interface SqlFunction<T, R> {
+    R apply(T t) throws SQLException;
+}
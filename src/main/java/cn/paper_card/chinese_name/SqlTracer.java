@@ -0,0 +1,207 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+
+// 记录表操作中每条预编译语句的执行时间
+// 超过阈值的写入日志，另外保留最近一段时间内最慢的若干条，可以用命令查看
+// 只有慢的语句才会查找SQL、格式化参数，正常的语句只多两次读取时间
+// 执行失败的语句（超时、连接断开等）也会记录，行数为-1，并记录SQLState
+class SqlTracer {
+
+    // sqlState: 执行失败时的SQLState，成功时为null
+    record SlowQuery(long time, long nanos, int rows, @Nullable String sqlState,
+                     @NotNull String sql, @NotNull String params, @NotNull String caller) {
+    }
+
+    // 最慢列表只保留这段时间内的语句
+    private static final long WINDOW = 60 * 60 * 1000L;
+
+    private static final int MAX_SQL_LENGTH = 300;
+
+    private static volatile long thresholdNanos = 200 * 1000_000L;
+
+    private static volatile boolean redact = true;
+
+    private static volatile int topSize = 20;
+
+    private static volatile @Nullable Logger logger = null;
+
+    // 预编译语句对应的SQL
+    private static final Map<PreparedStatement, String> SQLS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // 当前线程正在执行的命令，例如 /ch-name set
+    private static final ThreadLocal<String> CALLER = new ThreadLocal<>();
+
+    private static final ArrayList<SlowQuery> TOP = new ArrayList<>();
+
+    // 列表已满时其中最短的耗时，不超过它且没有过期的记录时不需要加锁
+    private static volatile long topFloor = -1;
+
+    private static volatile long topNextExpire = Long.MAX_VALUE;
+
+    static void configure(long slowMillis, boolean redactParams, int size) {
+        thresholdNanos = Math.max(0, slowMillis) * 1000_000L;
+        redact = redactParams;
+        topSize = Math.max(1, size);
+        synchronized (TOP) {
+            updateFloor();
+        }
+    }
+
+    static void setLogger(@Nullable Logger l) {
+        logger = l;
+    }
+
+    static @NotNull PreparedStatement prepare(@NotNull Connection connection, @NotNull String sql) throws SQLException {
+        final PreparedStatement ps = connection.prepareStatement(sql);
+        SQLS.put(ps, sql);
+        return ps;
+    }
+
+    static @NotNull PreparedStatement prepare(@NotNull Connection connection, @NotNull String sql, int autoGeneratedKeys) throws SQLException {
+        final PreparedStatement ps = connection.prepareStatement(sql, autoGeneratedKeys);
+        SQLS.put(ps, sql);
+        return ps;
+    }
+
+    static @Nullable String getCaller() {
+        return CALLER.get();
+    }
+
+    // 在当前线程中以caller的身份执行
+    static void runWithCaller(@Nullable String caller, @NotNull Runnable task) {
+        final String old = CALLER.get();
+        CALLER.set(caller);
+        try {
+            task.run();
+        } finally {
+            if (old == null) CALLER.remove();
+            else CALLER.set(old);
+        }
+    }
+
+    static long begin() {
+        return System.nanoTime();
+    }
+
+    // 语句执行完、结果读取完之后调用，rows: 返回的行数或者影响的行数
+    static void end(@NotNull PreparedStatement ps, long begin, int rows, @NotNull Object... params) {
+        ServiceMetrics.addRows(rows);
+        record(ps, begin, rows, null, params);
+    }
+
+    // 执行或者读取结果时抛出异常，在重新抛出之前调用
+    static void fail(@NotNull PreparedStatement ps, long begin, @NotNull SQLException e, @NotNull Object... params) {
+        record(ps, begin, -1, Objects.requireNonNullElse(e.getSQLState(), "?"), params);
+    }
+
+    private static void record(@NotNull PreparedStatement ps, long begin, int rows, @Nullable String sqlState, @NotNull Object @NotNull [] params) {
+        final long nanos = System.nanoTime() - begin;
+        final long now = System.currentTimeMillis();
+
+        final boolean slow = nanos >= thresholdNanos;
+        if (!slow && sqlState == null && nanos <= topFloor && now < topNextExpire) return;
+
+        final String caller = Objects.requireNonNullElse(CALLER.get(), "-");
+        final SlowQuery query = new SlowQuery(now, nanos, rows, sqlState, formatSql(SQLS.get(ps)), formatParams(params), caller);
+
+        final Logger l = logger;
+        if (l != null && sqlState != null) {
+            l.warn("SQL执行失败 %.1fms，SQLState：%s，调用：%s，SQL：%s，参数：%s".formatted(
+                    nanos / 1000_000.0, sqlState, caller, query.sql(), query.params()));
+        } else if (l != null && slow) {
+            l.warn("慢查询 %.1fms，%d行，调用：%s，SQL：%s，参数：%s".formatted(
+                    nanos / 1000_000.0, rows, caller, query.sql(), query.params()));
+        }
+
+        if (nanos <= topFloor && now < topNextExpire) return;
+
+        synchronized (TOP) {
+            TOP.removeIf(q -> q.time() + WINDOW <= now);
+
+            if (TOP.size() < topSize) {
+                TOP.add(query);
+            } else {
+                int min = 0;
+                for (int i = 1; i < TOP.size(); ++i) {
+                    if (TOP.get(i).nanos() < TOP.get(min).nanos()) min = i;
+                }
+                if (TOP.get(min).nanos() < nanos) TOP.set(min, query);
+            }
+            updateFloor();
+        }
+    }
+
+    // 需要持有TOP的锁
+    private static void updateFloor() {
+        while (TOP.size() > topSize) {
+            int min = 0;
+            for (int i = 1; i < TOP.size(); ++i) {
+                if (TOP.get(i).nanos() < TOP.get(min).nanos()) min = i;
+            }
+            TOP.remove(min);
+        }
+
+        long floor = Long.MAX_VALUE;
+        long expire = Long.MAX_VALUE;
+        for (final SlowQuery q : TOP) {
+            floor = Math.min(floor, q.nanos());
+            expire = Math.min(expire, q.time() + WINDOW);
+        }
+        topFloor = TOP.size() < topSize ? -1 : floor;
+        topNextExpire = expire;
+    }
+
+    // 按耗时从长到短
+    static @NotNull List<SlowQuery> getSlowest() {
+        final long now = System.currentTimeMillis();
+        final ArrayList<SlowQuery> list;
+        synchronized (TOP) {
+            TOP.removeIf(q -> q.time() + WINDOW <= now);
+            updateFloor();
+            list = new ArrayList<>(TOP);
+        }
+        list.sort(Comparator.comparingLong(SlowQuery::nanos).reversed());
+        return list;
+    }
+
+    static void clear() {
+        synchronized (TOP) {
+            TOP.clear();
+            updateFloor();
+        }
+    }
+
+    private static @NotNull String formatSql(@Nullable String sql) {
+        if (sql == null) return "?";
+        final String s = sql.replaceAll("\\s+", " ").trim();
+        if (s.length() <= MAX_SQL_LENGTH) return s;
+        return s.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    // 开启脱敏时字符串（中文名）只保留第一个字
+    private static @NotNull String formatParams(@NotNull Object @NotNull [] params) {
+        final boolean r = redact;
+        final StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (final Object p : params) {
+            if (p instanceof String str) {
+                if (r && !str.isEmpty()) {
+                    final int first = str.offsetByCodePoints(0, 1);
+                    joiner.add("'" + str.substring(0, first) + "*".repeat(str.codePointCount(first, str.length())) + "'");
+                } else {
+                    joiner.add("'" + str + "'");
+                }
+            } else {
+                joiner.add(String.valueOf(p));
+            }
+        }
+        return joiner.toString();
+    }
+}
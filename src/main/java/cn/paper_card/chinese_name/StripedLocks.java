@@ -0,0 +1,68 @@
+package cn.paper_card.chinese_name;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// 按键（UUID、名字）分段的锁，相同的键总是得到同一把锁
+class StripedLocks {
+
+    interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final @NotNull ReentrantLock[] locks;
+
+    StripedLocks(int stripes) {
+        int n = 1;
+        while (n < stripes) n <<= 1;
+
+        this.locks = new ReentrantLock[n];
+        for (int i = 0; i < n; ++i) this.locks[i] = new ReentrantLock();
+    }
+
+    private int indexOf(@NotNull Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return h & (this.locks.length - 1);
+    }
+
+    // 等待的时间计入当前的服务调用
+    private static void lock(@NotNull ReentrantLock l) {
+        if (l.tryLock()) return;
+        final long begin = System.nanoTime();
+        l.lock();
+        ServiceMetrics.addLockWait(System.nanoTime() - begin);
+    }
+
+    @NotNull Held lock(@NotNull Object key) {
+        final ReentrantLock l = this.locks[this.indexOf(key)];
+        lock(l);
+        return l::unlock;
+    }
+
+    // 按照固定顺序加锁，避免死锁
+    @NotNull Held lock(@NotNull Object key1, @NotNull Object key2) {
+        final int i = this.indexOf(key1);
+        final int j = this.indexOf(key2);
+
+        if (i == j) return this.lock(key1);
+
+        final ReentrantLock first = this.locks[Math.min(i, j)];
+        final ReentrantLock second = this.locks[Math.max(i, j)];
+
+        lock(first);
+        try {
+            lock(second);
+        } catch (RuntimeException | Error e) {
+            first.unlock();
+            throw e;
+        }
+
+        return () -> {
+            second.unlock();
+            first.unlock();
+        };
+    }
+}
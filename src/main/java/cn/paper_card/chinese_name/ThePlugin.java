@@ -2,12 +2,12 @@ package cn.paper_card.chinese_name;
 
 import cn.paper_card.chinese_name.api.ChineseNameApi;
 import cn.paper_card.database.api.DatabaseApi;
+import cn.paper_card.database.api.Util;
 import cn.paper_card.player_coins.api.PlayerCoinsApi;
 import com.github.Anon8281.universalScheduler.UniversalScheduler;
 import com.github.Anon8281.universalScheduler.scheduling.schedulers.TaskScheduler;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
-import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.permissions.Permission;
 import org.bukkit.plugin.ServicePriority;
@@ -15,6 +15,7 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public final class ThePlugin extends JavaPlugin {
@@ -25,10 +26,18 @@ public final class ThePlugin extends JavaPlugin {
 
     private ChineseNameApiImpl chineseNameApi = null;
 
+    private ConnectionPool connectionPool = null;
+
     private PlayerCoinsApi playerCoinsApi = null;
 
     private MyCommand myCommand = null;
 
+    private PlayerNameIndex playerNameIndex = null;
+
+    private NameRenderer nameRenderer = null;
+
+    private volatile Messages messages = null;
+
 
     public ThePlugin() {
         this.taskScheduler = UniversalScheduler.getScheduler(this);
@@ -37,21 +46,57 @@ public final class ThePlugin extends JavaPlugin {
     }
 
     void appendPrefix(@NotNull TextComponent.Builder text) {
-        text.append(Component.text("[").color(NamedTextColor.LIGHT_PURPLE));
-        text.append(Component.text("中文名").color(NamedTextColor.AQUA));
-        text.append(Component.text("]").color(NamedTextColor.LIGHT_PURPLE));
+        text.append(this.messages.prefix());
     }
 
     void handleException(@NotNull String msg, @NotNull Throwable e) {
+        MyCommand.markFailed();
         this.getSLF4JLogger().error(msg, e);
     }
 
     @Override
     public void onLoad() {
+        SqlTracer.setLogger(this.getSLF4JLogger());
+        this.applySqlTracer();
+        this.applyMessages();
+
         final DatabaseApi api = this.getServer().getServicesManager().load(DatabaseApi.class);
         if (api == null) throw new RuntimeException("无法连接到" + DatabaseApi.class.getSimpleName());
 
-        this.chineseNameApi = new ChineseNameApiImpl(api.getRemoteMySQL().getConnectionImportant());
+        final int poolSize = this.configManager.getPoolSize();
+        final SessionSource source;
+        final SessionSource migrationSource;
+        if (poolSize > 0) {
+            final String jdbcUrl = this.configManager.getPoolJdbcUrl();
+            final String address = this.configManager.getPoolAddress();
+            final String user = this.configManager.getPoolUser();
+            final String password = this.configManager.getPoolPassword();
+
+            final ConnectionPool.ConnectionFactory factory;
+            if (jdbcUrl.isEmpty()) factory = () -> Util.connectMySQL(address, user, password);
+            else factory = () -> DriverManager.getConnection(jdbcUrl, user, password);
+
+            this.getSLF4JLogger().info("使用%d个连接的连接池".formatted(poolSize));
+            this.connectionPool = new ConnectionPool(factory, poolSize,
+                    this.configManager.getPoolMaxWait(), this.configManager.getPoolIdleTimeout());
+            source = this.connectionPool;
+
+            // 表结构迁移使用连接池以外的连接，建索引期间不占用池中的连接
+            migrationSource = new ConnectionPool(factory, 1,
+                    this.configManager.getPoolMaxWait(), this.configManager.getPoolIdleTimeout());
+        } else {
+            source = new SharedConnectionSource(api.getRemoteMySQL().getConnectionImportant());
+
+            // 共用的连接同一时间只能执行一条语句，表结构迁移使用另一个连接
+            migrationSource = new SharedConnectionSource(api.getRemoteMySQL().getConnectionUnimportant());
+        }
+
+        final AsyncExecutor asyncExecutor = new AsyncExecutor(
+                Math.max(1, this.configManager.getAsyncThreads()), Math.max(1, this.configManager.getAsyncQueueSize()));
+
+        this.chineseNameApi = new ChineseNameApiImpl(source, migrationSource, asyncExecutor);
+        this.chineseNameApi.getNameService().setWriteBehindMaxPending(this.configManager.getWriteBehindMaxPending());
+        this.chineseNameApi.getNameService().setWriteBehindErrorHandler(this::handleException);
 
         this.getSLF4JLogger().info("注册%s...".formatted(ChineseNameApi.class.getSimpleName()));
         this.getServer().getServicesManager().register(ChineseNameApi.class, this.chineseNameApi, this, ServicePriority.Highest);
@@ -59,13 +104,109 @@ public final class ThePlugin extends JavaPlugin {
 
     @Override
     public void onEnable() {
+        this.playerNameIndex = new PlayerNameIndex(this);
+        this.playerNameIndex.buildAsync();
+
         this.myCommand = new MyCommand(this);
         new OnOpJoin(this);
+        new OnPlayerLogin(this);
+        new OnAsyncTabComplete(this);
+
+        // 表结构迁移使用在线DDL和单独的连接，异步执行，不影响服务
+        this.taskScheduler.runTaskAsynchronously(() -> {
+            final ChineseNameApiImpl api = this.chineseNameApi;
+            if (api == null) return;
+
+            try {
+                for (final SchemaMigrator.Migration migration : api.migrate(this.getSLF4JLogger())) {
+                    this.getSLF4JLogger().info("已执行表结构迁移 v%d: %s".formatted(migration.version(), migration.description()));
+                }
+            } catch (SQLException e) {
+                this.handleException("migrate schema", e);
+            }
+        });
+
+        // 每5分钟以数据库为准校正一次未处理申请的数量
+        this.taskScheduler.runTaskTimerAsynchronously(() -> {
+            final ChineseNameApiImpl api = this.chineseNameApi;
+            if (api == null) return;
+
+            try {
+                api.getApplicationService().reconcilePendingCount();
+            } catch (SQLException e) {
+                this.handleException("reconcile pending application count", e);
+            }
+        }, 20 * 60 * 5, 20 * 60 * 5);
+
+        // 定时写入延迟的启用、禁用
+        final long interval = Math.max(1, this.configManager.getWriteBehindInterval());
+        this.taskScheduler.runTaskTimerAsynchronously(() -> {
+            final ChineseNameApiImpl api = this.chineseNameApi;
+            if (api == null) return;
+
+            try {
+                api.getNameService().flushPending();
+            } catch (SQLException e) {
+                this.handleException("flush pending name updates", e);
+            }
+        }, interval, interval);
+
+        final ConnectionPool pool = this.connectionPool;
+        if (pool != null) {
+            // 每分钟清理一次空闲连接
+            this.taskScheduler.runTaskTimerAsynchronously(pool::evictIdle, 20 * 60, 20 * 60);
+        }
 
         this.playerCoinsApi = this.getServer().getServicesManager().load(PlayerCoinsApi.class);
 
         this.configManager.setDefaults();
         this.configManager.save();
+
+        this.applyNameValidator();
+        this.applySqlTracer();
+
+        this.nameRenderer = new NameRenderer(this);
+        this.applyNameRenderer();
+        if (this.chineseNameApi != null) this.chineseNameApi.getNameService().setNameChangeListener(this.nameRenderer);
+        this.nameRenderer.renderOnlinePlayers();
+    }
+
+    // 根据配置更新中文名的检查规则，配置不正确时保持原来的规则
+    void applyNameValidator() {
+        final ChineseNameApiImpl api = this.chineseNameApi;
+        if (api == null) return;
+
+        final NameValidator validator;
+        try {
+            validator = NameValidator.parse(this.configManager.getNameRanges(),
+                    this.configManager.getNameMinLength(), this.configManager.getNameMaxLength());
+        } catch (IllegalArgumentException e) {
+            this.getSLF4JLogger().warn("中文名检查规则配置不正确：" + e.getMessage());
+            return;
+        }
+
+        api.getApplicationService().setNameValidator(validator);
+    }
+
+    void applyMessages() {
+        this.messages = Messages.load(this, this.configManager.getMessagesLanguage());
+    }
+
+    @NotNull Messages getMessages() {
+        return this.messages;
+    }
+
+    void applySqlTracer() {
+        SqlTracer.configure(this.configManager.getSqlSlowMillis(),
+                this.configManager.getSqlRedactParams(), this.configManager.getSqlTopSize());
+    }
+
+    void applyNameRenderer() {
+        final NameRenderer renderer = this.nameRenderer;
+        if (renderer == null) return;
+
+        renderer.configure(new NameRenderer.Options(this.configManager.getRenderDisplayName(),
+                this.configManager.getRenderListName(), this.configManager.getRenderNametag()));
     }
 
     @Override
@@ -76,19 +217,22 @@ public final class ThePlugin extends JavaPlugin {
 
         this.playerCoinsApi = null;
 
-        if (this.chineseNameApi != null) {
-            try {
-                this.chineseNameApi.getNameService().destroy();
-            } catch (SQLException e) {
-                this.handleException("destroy name service", e);
-            }
+        if (this.nameRenderer != null) {
+            if (this.chineseNameApi != null) this.chineseNameApi.getNameService().setNameChangeListener(null);
+            this.nameRenderer.destroy();
+            this.nameRenderer = null;
+        }
 
+        if (this.chineseNameApi != null) {
             try {
-                this.chineseNameApi.getApplicationService().destroy();
+                this.chineseNameApi.destroy();
             } catch (SQLException e) {
-                this.handleException("destroy application service", e);
+                this.handleException("destroy chinese name api", e);
             }
         }
+        this.connectionPool = null;
+
+        SqlTracer.setLogger(null);
     }
 
     @NotNull Permission addPermission(@NotNull String name) {
@@ -109,6 +253,10 @@ public final class ThePlugin extends JavaPlugin {
         return this.myCommand;
     }
 
+    @Nullable PlayerNameIndex getPlayerNameIndex() {
+        return this.playerNameIndex;
+    }
+
     @Nullable PlayerCoinsApi getPlayerCoinsApi() {
         return this.playerCoinsApi;
     }
@@ -118,50 +266,31 @@ public final class ThePlugin extends JavaPlugin {
     }
 
     void sendError(@NotNull CommandSender sender, @NotNull String error) {
-        final TextComponent.Builder text = Component.text();
-        this.appendPrefix(text);
-        text.appendSpace();
-        text.append(Component.text(error).color(NamedTextColor.RED));
-        sender.sendMessage(text.build());
+        sender.sendMessage(this.messages.render(Messages.Key.ERROR, error));
     }
 
     void sendException(@NotNull CommandSender sender, @NotNull Throwable e) {
+        MyCommand.markFailed();
+        final Messages m = this.messages;
         final TextComponent.Builder text = Component.text();
-        this.appendPrefix(text);
-        text.appendSpace();
-
-        text.append(Component.text("==== 异常信息 ====").color(NamedTextColor.DARK_RED));
+        text.append(m.render(Messages.Key.EXCEPTION_HEADER));
 
         for (Throwable t = e; t != null; t = t.getCause()) {
             text.appendNewline();
-            text.append(Component.text(t.toString()).color(NamedTextColor.RED));
+            text.append(m.render(Messages.Key.EXCEPTION_CAUSE, t.toString()));
         }
         sender.sendMessage(text.build());
     }
 
     void sendWarning(@NotNull CommandSender sender, @NotNull String warning) {
-        final TextComponent.Builder text = Component.text();
-        this.appendPrefix(text);
-        text.appendSpace();
-        text.append(Component.text(warning).color(NamedTextColor.YELLOW));
-        sender.sendMessage(text.build());
+        sender.sendMessage(this.messages.render(Messages.Key.WARNING, warning));
     }
 
     void sendInfo(@NotNull CommandSender sender, @NotNull String info) {
-        final TextComponent.Builder text = Component.text();
-        this.appendPrefix(text);
-        text.appendSpace();
-        text.append(Component.text(info).color(NamedTextColor.GREEN));
-        sender.sendMessage(text.build());
+        sender.sendMessage(this.messages.render(Messages.Key.INFO, info));
     }
 
     void sendInfo(@NotNull CommandSender sender, @NotNull TextComponent info) {
-        final TextComponent.Builder text = Component.text();
-        this.appendPrefix(text);
-        sender.sendMessage(text
-                .appendSpace()
-                .append(info)
-                .build()
-        );
+        sender.sendMessage(this.messages.render(Messages.Key.MESSAGE, info));
     }
 }
@@ -0,0 +1,70 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.ApplicationInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 申请列表分页，对比OFFSET分页和按 (time, id) 的游标分页
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApplicationTableBenchmark {
+
+    @Param({"20000"})
+    public int rows;
+
+    @Param({"0", "1000", "15000"})
+    public int offset;
+
+    @Param({"10"})
+    public int limit;
+
+    private BenchmarkDatabase database;
+
+    private ConnectionPool pool;
+
+    private DbSession session;
+
+    private ApplicationTable table;
+
+    private ApplicationServiceImpl.Cursor cursor;
+
+    @Setup
+    public void setup() throws SQLException {
+        this.database = new BenchmarkDatabase(0, this.rows);
+        this.pool = this.database.createPool(1);
+        this.session = this.pool.acquire();
+        this.table = this.session.getApplicationTable();
+
+        // 游标指向offset前一条，和queryWithPage返回同一页
+        if (this.offset > 0) {
+            final List<ApplicationInfo> list = this.table.queryWithPage(1, this.offset - 1);
+            this.cursor = ApplicationServiceImpl.Cursor.of(list.get(0));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        this.pool.release(this.session, null);
+        this.pool.close();
+        this.database.drop();
+    }
+
+    @Benchmark
+    public List<ApplicationInfo> queryWithPage() throws SQLException {
+        return this.table.queryWithPage(this.limit, this.offset);
+    }
+
+    @Benchmark
+    public List<ApplicationInfo> queryAfter() throws SQLException {
+        final ApplicationServiceImpl.Cursor c = this.cursor;
+        if (c == null) return this.table.queryAfter(Long.MIN_VALUE, Integer.MIN_VALUE, this.limit);
+        return this.table.queryAfter(c.time(), c.id(), this.limit);
+    }
+}
@@ -0,0 +1,80 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.ApplicationInfo;
+import cn.paper_card.chinese_name.api.NameInfo;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 基准测试使用的内存数据库，H2的MySQL兼容模式
+class BenchmarkDatabase {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private final @NotNull String url;
+
+    private final @NotNull UUID[] uuids;
+
+    private final @NotNull String[] names;
+
+    BenchmarkDatabase(int nameCount, int applicationCount) throws SQLException {
+        // 每个实例使用独立的数据库
+        this.url = "jdbc:h2:mem:bench%d;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1".formatted(COUNTER.incrementAndGet());
+        this.uuids = new UUID[nameCount];
+        this.names = new String[nameCount];
+
+        final Random random = new Random(nameCount);
+        for (int i = 0; i < nameCount; ++i) {
+            this.uuids[i] = new UUID(random.nextLong(), random.nextLong());
+            this.names[i] = randomName(random, i);
+        }
+
+        final ConnectionPool pool = this.createPool(1);
+        try {
+            pool.execute(s -> {
+                final ChineseNameTable t = s.getNameTable();
+                for (int i = 0; i < nameCount; ++i) {
+                    t.insert(new NameInfo(this.uuids[i], this.names[i], System.currentTimeMillis(), true));
+                }
+
+                final ApplicationTable t2 = s.getApplicationTable();
+                for (int i = 0; i < applicationCount; ++i) {
+                    final UUID uuid = new UUID(random.nextLong(), random.nextLong());
+                    t2.insert(new ApplicationInfo(0, uuid, "申请" + i, 30, 1000L + i));
+                }
+                return null;
+            });
+        } finally {
+            pool.close();
+        }
+    }
+
+    // 保证不重复，前面是汉字，后面的序号让名字唯一
+    private static @NotNull String randomName(@NotNull Random random, int i) {
+        final char c = (char) (0x4E00 + random.nextInt(0x9FA5 - 0x4E00));
+        return "%c%d".formatted(c, i);
+    }
+
+    @NotNull ConnectionPool createPool(int size) {
+        return new ConnectionPool(() -> DriverManager.getConnection(this.url), size, 60 * 1000L, 10 * 60 * 1000L);
+    }
+
+    @NotNull UUID[] getUuids() {
+        return this.uuids;
+    }
+
+    @NotNull String[] getNames() {
+        return this.names;
+    }
+
+    // 关闭内存数据库
+    void drop() throws SQLException {
+        try (final var connection = DriverManager.getConnection(this.url)) {
+            connection.createStatement().execute("SHUTDOWN");
+        }
+    }
+}
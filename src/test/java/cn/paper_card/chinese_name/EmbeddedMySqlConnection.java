@@ -0,0 +1,165 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.database.api.DatabaseApi;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 不需要MySQL服务器的MySqlConnection，使用H2内存数据库的MySQL兼容模式
+// 可以模拟连接断开、慢查询和执行SQL时抛出异常
+class EmbeddedMySqlConnection implements DatabaseApi.MySqlConnection {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private final @NotNull String url;
+
+    private final @NotNull Connection keepAlive;
+
+    private long lastUse = -1;
+
+    private Connection connection = null;
+
+    private int connectCount = 0;
+
+    // 当前连接是否已经被"服务器"断开
+    private volatile boolean dropped = false;
+
+    private volatile long queryDelayMillis = 0;
+
+    private final @NotNull AtomicInteger failCount = new AtomicInteger();
+
+    private volatile SQLException failWith = null;
+
+    EmbeddedMySqlConnection() throws SQLException {
+        this.url = "jdbc:h2:mem:embedded%d;MODE=MySQL;DATABASE_TO_LOWER=TRUE".formatted(COUNTER.incrementAndGet());
+        // 内存数据库在最后一个连接关闭时被删除，保持一个连接
+        this.keepAlive = DriverManager.getConnection(this.url);
+    }
+
+    // 断开当前连接，之后使用这个连接都会抛出08S01
+    void dropConnection() {
+        this.dropped = true;
+    }
+
+    // 之后每次执行SQL都延迟
+    void setQueryDelay(long millis) {
+        this.queryDelayMillis = millis;
+    }
+
+    // 之后的count次执行SQL抛出异常
+    void failNext(int count, @NotNull SQLException e) {
+        this.failWith = e;
+        this.failCount.set(count);
+    }
+
+    // 直接访问数据库，不经过故障注入
+    @NotNull Connection getDirectConnection() {
+        return this.keepAlive;
+    }
+
+    private void beforeExecute() throws SQLException {
+        if (this.dropped) throw new SQLNonTransientConnectionException("Communications link failure", "08S01");
+
+        final SQLException e = this.failWith;
+        if (e != null && this.failCount.getAndUpdate(c -> c > 0 ? c - 1 : 0) > 0) throw e;
+
+        final long delay = this.queryDelayMillis;
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("被中断", ex);
+            }
+        }
+    }
+
+    private static Object invoke(@NotNull Object target, @NotNull Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private @NotNull Statement wrapStatement(@NotNull Statement statement, @NotNull Class<? extends Statement> type) {
+        final InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) this.beforeExecute();
+            return invoke(statement, method, args);
+        };
+        return (Statement) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[]{type}, handler);
+    }
+
+    private @NotNull Connection wrapConnection(@NotNull Connection raw) {
+        final InvocationHandler handler = (proxy, method, args) -> {
+            final String name = method.getName();
+
+            if (name.equals("isValid")) return !this.dropped && raw.isValid((Integer) args[0]);
+            if (name.equals("close")) return invoke(raw, method, args);
+
+            // 断开后不能再使用
+            if (this.dropped) throw new SQLNonTransientConnectionException("Communications link failure", "08S01");
+
+            final Object result = invoke(raw, method, args);
+            if (result instanceof CallableStatement s) return this.wrapStatement(s, CallableStatement.class);
+            if (result instanceof PreparedStatement s) return this.wrapStatement(s, PreparedStatement.class);
+            if (result instanceof Statement s) return this.wrapStatement(s, Statement.class);
+            return result;
+        };
+        return (Connection) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[]{Connection.class}, handler);
+    }
+
+    @Override
+    public long getLastUseTime() {
+        return this.lastUse;
+    }
+
+    @Override
+    public void setLastUseTime() {
+        this.lastUse = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized @NotNull Connection getRawConnection() throws SQLException {
+        if (this.connection != null) return this.connection;
+
+        this.dropped = false;
+        this.connection = this.wrapConnection(DriverManager.getConnection(this.url));
+        ++this.connectCount;
+        return this.connection;
+    }
+
+    @Override
+    public synchronized int getConnectCount() {
+        return this.connectCount;
+    }
+
+    @Override
+    public void testConnection() throws SQLException {
+        final Connection c = this.getRawConnection();
+        if (!c.isValid(1)) throw new SQLNonTransientConnectionException("Communications link failure", "08S01");
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        final Connection c = this.connection;
+        this.connection = null;
+        if (c != null) c.close();
+    }
+
+    // 和Database插件一样，出现异常后关闭连接，下次使用时重新连接
+    @Override
+    public void handleException(@NotNull SQLException e) throws SQLException {
+        this.close();
+    }
+
+    void destroy() throws SQLException {
+        this.close();
+        this.keepAlive.close();
+    }
+}
@@ -0,0 +1,102 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.NameInfo;
+import cn.paper_card.chinese_name.api.exception.NameRegisteredException;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// 多线程同时访问NameServiceImpl，包括缓存、过滤器和连接池的竞争
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class NameServiceBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"1", "4"})
+    public int poolSize;
+
+    // 写入时只使用前面这么多个玩家，制造锁竞争
+    @Param({"16"})
+    public int hotPlayers;
+
+    private BenchmarkDatabase database;
+
+    private ConnectionPool pool;
+
+    private AsyncExecutor asyncExecutor;
+
+    private NameServiceImpl service;
+
+    @Setup
+    public void setup() throws SQLException {
+        this.database = new BenchmarkDatabase(this.rows, 0);
+        this.pool = this.database.createPool(this.poolSize);
+        this.asyncExecutor = new AsyncExecutor(1, 16);
+        this.service = new NameServiceImpl(this.pool, new StripedLocks(64), this.asyncExecutor, new ServiceMetrics());
+
+        // 加载过滤器
+        this.service.queryByName("不存在");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        this.asyncExecutor.shutdown();
+        this.service.destroy();
+        this.pool.close();
+        this.database.drop();
+    }
+
+    private UUID randomUuid() {
+        final UUID[] uuids = this.database.getUuids();
+        return uuids[ThreadLocalRandom.current().nextInt(uuids.length)];
+    }
+
+    // 数据量超过缓存容量，包含命中和未命中
+    @Benchmark
+    public NameInfo queryByUuid() throws SQLException {
+        return this.service.queryByUuid(this.randomUuid());
+    }
+
+    // 在线玩家的查询，总是命中缓存
+    @Benchmark
+    public NameInfo queryByUuidHot() throws SQLException {
+        final UUID[] uuids = this.database.getUuids();
+        return this.service.queryByUuid(uuids[ThreadLocalRandom.current().nextInt(this.hotPlayers)]);
+    }
+
+    @Benchmark
+    public NameInfo queryByNameExisting() throws SQLException {
+        final String[] names = this.database.getNames();
+        return this.service.queryByName(names[ThreadLocalRandom.current().nextInt(names.length)]);
+    }
+
+    // 大部分由过滤器直接返回
+    @Benchmark
+    public NameInfo queryByNameMissing() throws SQLException {
+        return this.service.queryByName("无%d".formatted(ThreadLocalRandom.current().nextInt()));
+    }
+
+    // 少数玩家反复改名，同一个条带锁上的竞争
+    @Benchmark
+    public boolean addOrUpdateHot() throws SQLException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int i = random.nextInt(this.hotPlayers);
+        final UUID uuid = this.database.getUuids()[i];
+        final String name = "热%d_%d".formatted(i, random.nextInt(4));
+        try {
+            return this.service.addOrUpdateByUuid(new NameInfo(uuid, name, System.currentTimeMillis(), true));
+        } catch (NameRegisteredException e) {
+            return false;
+        }
+    }
+}
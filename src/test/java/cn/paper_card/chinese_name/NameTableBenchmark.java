@@ -0,0 +1,93 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.NameInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// ChineseNameTable的查询和解析，直接使用一个连接，不经过缓存
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameTableBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+
+    private ConnectionPool pool;
+
+    private DbSession session;
+
+    private ChineseNameTable table;
+
+    private List<UUID> batch;
+
+    @Setup
+    public void setup() throws SQLException {
+        this.database = new BenchmarkDatabase(this.rows, 0);
+        this.pool = this.database.createPool(1);
+        this.session = this.pool.acquire();
+        this.table = this.session.getNameTable();
+
+        final UUID[] uuids = this.database.getUuids();
+        this.batch = new ArrayList<>(ChineseNameTable.BATCH_QUERY_SIZE);
+        for (int i = 0; i < ChineseNameTable.BATCH_QUERY_SIZE; ++i) {
+            this.batch.add(uuids[ThreadLocalRandom.current().nextInt(uuids.length)]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        this.pool.release(this.session, null);
+        this.pool.close();
+        this.database.drop();
+    }
+
+    @Benchmark
+    public NameInfo queryByUuid() throws SQLException {
+        final UUID[] uuids = this.database.getUuids();
+        return this.table.queryByUuid(uuids[ThreadLocalRandom.current().nextInt(uuids.length)]);
+    }
+
+    @Benchmark
+    public NameInfo queryByUuidMissing() throws SQLException {
+        return this.table.queryByUuid(UUID.randomUUID());
+    }
+
+    @Benchmark
+    public NameInfo queryByName() throws SQLException {
+        final String[] names = this.database.getNames();
+        return this.table.queryByName(names[ThreadLocalRandom.current().nextInt(names.length)]);
+    }
+
+    @Benchmark
+    public Map<UUID, NameInfo> queryByUuids() throws SQLException {
+        return this.table.queryByUuids(this.batch);
+    }
+
+    // 和上面对比，逐个查询同样数量的UUID
+    @Benchmark
+    public Map<UUID, NameInfo> queryByUuidOneByOne() throws SQLException {
+        final HashMap<UUID, NameInfo> map = new HashMap<>();
+        for (final UUID uuid : this.batch) {
+            final NameInfo info = this.table.queryByUuid(uuid);
+            if (info != null) map.put(uuid, info);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public int queryAllNames() throws SQLException {
+        final int[] count = {0};
+        this.table.queryAllNames(name -> ++count[0]);
+        return count[0];
+    }
+}
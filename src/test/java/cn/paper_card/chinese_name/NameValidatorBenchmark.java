@@ -0,0 +1,68 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.exception.InvalidNameException;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// 对比原来的正则表达式和按码点检查的性能
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameValidatorBenchmark {
+
+    @Param({"张三", "欧阳娜娜", "abc", "张三李四王五赵六", "张𠀀"})
+    public String name;
+
+    private Pattern pattern;
+
+    private NameValidator validator;
+
+    private AsyncExecutor asyncExecutor;
+
+    private ApplicationServiceImpl service;
+
+    @Setup
+    public void setup() {
+        this.pattern = Pattern.compile("[\\u4e00-\\u9fa5]{2,4}");
+        this.validator = NameValidator.DEFAULT;
+
+        // 只检查名字，不会访问数据库
+        final ConnectionPool pool = new ConnectionPool(() -> {
+            throw new SQLException("不应该访问数据库");
+        }, 1, 0, 0);
+        this.asyncExecutor = new AsyncExecutor(1, 1);
+        this.service = new ApplicationServiceImpl(pool, new StripedLocks(1), this.asyncExecutor, new ServiceMetrics());
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.asyncExecutor.shutdown();
+    }
+
+    @Benchmark
+    public boolean pattern() {
+        return this.pattern.matcher(this.name).matches();
+    }
+
+    @Benchmark
+    public boolean validator() {
+        return this.validator.isValid(this.name);
+    }
+
+    // 包括名字不正确时创建异常的开销
+    @Benchmark
+    public boolean checkNameValid() {
+        try {
+            this.service.checkNameValid(this.name);
+            return true;
+        } catch (InvalidNameException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.NameInfo;
+import org.junit.Test;
+
+import java.sql.*;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class TestConstraintViolation {
+
+    @Test
+    public void testClassify() {
+        // sqlite-jdbc：SQLState为null，错误码为SQLITE_CONSTRAINT
+        final SQLException sqlite = new SQLException("[SQLITE_CONSTRAINT_UNIQUE] UNIQUE constraint failed", null, 19);
+        assertTrue(Dialect.SQLITE.isConstraintViolation(sqlite));
+        assertFalse(Dialect.MYSQL.isConstraintViolation(sqlite));
+        assertFalse(Dialect.H2.isConstraintViolation(sqlite));
+
+        // SQLITE_BUSY
+        assertFalse(Dialect.SQLITE.isConstraintViolation(new SQLException("[SQLITE_BUSY]", null, 5)));
+
+        assertTrue(Dialect.MYSQL.isConstraintViolation(new SQLIntegrityConstraintViolationException("Duplicate entry", "23000", 1062)));
+        assertTrue(Dialect.H2.isConstraintViolation(new SQLException("Unique index", "23505", 23505)));
+        assertFalse(Dialect.MYSQL.isConstraintViolation(new SQLException("Deadlock found", "40001", 1213)));
+        assertFalse(Dialect.MYSQL.isConstraintViolation(new SQLException("Communications link failure", "08S01", 0)));
+    }
+
+    @Test
+    public void testBatch() {
+        final SQLException sqlite = new SQLException("[SQLITE_CONSTRAINT_UNIQUE]", null, 19);
+
+        // 原来的异常在cause中
+        assertTrue(Dialect.SQLITE.isConstraintViolation(new BatchUpdateException("batch", null, 0, new int[0], sqlite)));
+
+        // 原来的异常在nextException中
+        final BatchUpdateException next = new BatchUpdateException("batch", null, 0, new int[0]);
+        next.setNextException(new SQLException("Duplicate entry", "23000", 1062));
+        assertTrue(Dialect.MYSQL.isConstraintViolation(next));
+
+        // 断开连接、死锁不是约束冲突
+        assertFalse(Dialect.MYSQL.isConstraintViolation(new BatchUpdateException("lost", "08S01", 0, new int[0])));
+        assertFalse(Dialect.MYSQL.isConstraintViolation(new BatchUpdateException("deadlock", "40001", 1213, new int[0])));
+        assertFalse(Dialect.SQLITE.isConstraintViolation(new BatchUpdateException("batch", null, 0, new int[0])));
+    }
+
+    @Test
+    public void testSqliteDriver() throws SQLException {
+        try (final Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            assertEquals(Dialect.SQLITE, Dialect.of(connection));
+
+            final ChineseNameTable t = new ChineseNameTable(connection);
+            assertEquals(1, t.insert(new NameInfo(UUID.randomUUID(), "张三", 1, true)));
+
+            try {
+                t.insert(new NameInfo(UUID.randomUUID(), "张三", 2, true));
+                fail();
+            } catch (SQLException e) {
+                assertNull(e.getSQLState());
+                assertTrue(Dialect.SQLITE.isConstraintViolation(e));
+            }
+
+            t.close();
+        }
+    }
+}
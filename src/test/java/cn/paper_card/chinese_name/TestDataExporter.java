@@ -0,0 +1,237 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.ApplicationInfo;
+import cn.paper_card.chinese_name.api.NameInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class TestDataExporter {
+
+    private static final int BATCH_SIZE = 3;
+
+    // 需要转义的名字
+    private static final String[] NAMES = {"张三", "李,四", "王\"五\"", "赵\n六", "\"孙,七\"\r\n", "周\\八\t", "吴\u0001九"};
+
+    private EmbeddedMySqlConnection mySqlConnection;
+
+    private SharedConnectionSource source;
+
+    private DataExporter exporter;
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        this.mySqlConnection = new EmbeddedMySqlConnection();
+        this.source = new SharedConnectionSource(this.mySqlConnection);
+        this.exporter = new DataExporter(this.source, BATCH_SIZE);
+
+        this.source.execute(s -> {
+            s.getNameTable();
+            s.getApplicationTable();
+            return new SchemaMigrator().migrate(s.getConnection());
+        });
+
+        this.dir = Files.createTempDirectory("export");
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        this.source.close();
+        this.mySqlConnection.destroy();
+
+        try (final Stream<Path> files = Files.list(this.dir)) {
+            for (final Path p : files.toList()) Files.delete(p);
+        }
+        Files.delete(this.dir);
+    }
+
+    private Map<UUID, NameInfo> insertNames(int count) throws SQLException {
+        final HashMap<UUID, NameInfo> map = new HashMap<>();
+        for (int i = 0; i < count; ++i) {
+            final NameInfo info = new NameInfo(UUID.randomUUID(), NAMES[i % NAMES.length] + i, 1000L + i, i % 2 == 0);
+            this.source.execute(s -> s.getNameTable().insert(info));
+            map.put(info.uuid(), info);
+        }
+        return map;
+    }
+
+    private static List<String> lines(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    // 按RFC 4180解析，引号内可以有逗号、引号和换行
+    private static List<List<String>> parseCsv(Path file) throws IOException {
+        final String s = Files.readString(file, StandardCharsets.UTF_8);
+        final List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < s.length(); ++i) {
+            final char c = s.charAt(i);
+            if (quoted) {
+                if (c != '"') field.append(c);
+                else if (i + 1 < s.length() && s.charAt(i + 1) == '"') {
+                    field.append('"');
+                    ++i;
+                } else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                row.add(field.toString());
+                field.setLength(0);
+                rows.add(row);
+                row = new ArrayList<>();
+            } else {
+                field.append(c);
+            }
+        }
+
+        assertFalse(quoted);
+        assertEquals(0, field.length());
+        assertTrue(row.isEmpty());
+        return rows;
+    }
+
+    private static String json(String s) {
+        final StringBuilder sb = new StringBuilder("\"");
+        for (final char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                case '\u0001' -> sb.append("\\u0001");
+                default -> sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    @Test
+    public void testNamesCsv() throws Exception {
+        // 7条，最后一批不满
+        final Map<UUID, NameInfo> expected = insertNames(7);
+        final Path file = this.dir.resolve("names.csv");
+
+        assertEquals(7, this.exporter.exportNames(file, DataExporter.Format.CSV));
+
+        final List<List<String>> rows = parseCsv(file);
+        assertEquals(List.of("uuid", "name", "time", "enable"), rows.get(0));
+        assertEquals(8, rows.size());
+
+        final HashMap<UUID, NameInfo> actual = new HashMap<>();
+        for (final List<String> row : rows.subList(1, rows.size())) {
+            assertEquals(4, row.size());
+            final NameInfo info = new NameInfo(UUID.fromString(row.get(0)), row.get(1),
+                    Long.parseLong(row.get(2)), Boolean.parseBoolean(row.get(3)));
+            assertNull(actual.put(info.uuid(), info));
+        }
+        assertEquals(expected, actual);
+
+        // 没有留下临时文件
+        assertFalse(Files.exists(this.dir.resolve("names.csv.tmp")));
+    }
+
+    @Test
+    public void testNamesNdjson() throws Exception {
+        // 刚好两批，最后需要多查询一次空页
+        final Map<UUID, NameInfo> expected = insertNames(6);
+        final Path file = this.dir.resolve("names.ndjson");
+
+        assertEquals(6, this.exporter.exportNames(file, DataExporter.Format.NDJSON));
+
+        final HashSet<String> want = new HashSet<>();
+        for (final NameInfo info : expected.values()) {
+            want.add("{\"uuid\":\"%s\",\"name\":%s,\"time\":%d,\"enable\":%b}".formatted(
+                    info.uuid(), json(info.name()), info.time(), info.enable()));
+        }
+
+        final List<String> lines = lines(file);
+        assertEquals(6, lines.size());
+        assertEquals(want, new HashSet<>(lines));
+    }
+
+    @Test
+    public void testApplications() throws Exception {
+        final HashMap<Integer, ApplicationInfo> expected = new HashMap<>();
+        for (int i = 0; i < 7; ++i) {
+            final ApplicationInfo info = new ApplicationInfo(0, UUID.randomUUID(), NAMES[i], 10L * i, 2000L + i);
+            final int id = this.source.execute(s -> s.getApplicationTable().insert(info));
+            expected.put(id, new ApplicationInfo(id, info.uuid(), info.name(), info.coins(), info.time()));
+        }
+
+        final Path csv = this.dir.resolve("apps.csv");
+        assertEquals(7, this.exporter.exportApplications(csv, DataExporter.Format.CSV));
+
+        final List<List<String>> rows = parseCsv(csv);
+        assertEquals(List.of("id", "uuid", "name", "coins", "time"), rows.get(0));
+
+        // 按ID顺序导出
+        int lastId = Integer.MIN_VALUE;
+        final HashMap<Integer, ApplicationInfo> actual = new HashMap<>();
+        for (final List<String> row : rows.subList(1, rows.size())) {
+            final ApplicationInfo info = new ApplicationInfo(Integer.parseInt(row.get(0)), UUID.fromString(row.get(1)),
+                    row.get(2), Long.parseLong(row.get(3)), Long.parseLong(row.get(4)));
+            assertTrue(info.id() > lastId);
+            lastId = info.id();
+            actual.put(info.id(), info);
+        }
+        assertEquals(expected, actual);
+
+        final Path ndjson = this.dir.resolve("apps.ndjson");
+        assertEquals(7, this.exporter.exportApplications(ndjson, DataExporter.Format.NDJSON));
+
+        final HashSet<String> want = new HashSet<>();
+        for (final ApplicationInfo info : expected.values()) {
+            want.add("{\"id\":%d,\"uuid\":\"%s\",\"name\":%s,\"coins\":%d,\"time\":%d}".formatted(
+                    info.id(), info.uuid(), json(info.name()), info.coins(), info.time()));
+        }
+        assertEquals(want, new HashSet<>(lines(ndjson)));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        final Path file = this.dir.resolve("empty.csv");
+        assertEquals(0, this.exporter.exportNames(file, DataExporter.Format.CSV));
+        assertEquals(List.of("uuid,name,time,enable"), lines(file));
+    }
+
+    @Test
+    public void testFailureCleansUp() throws Exception {
+        insertNames(7);
+        final Path file = this.dir.resolve("names.csv");
+        Files.writeString(file, "旧的导出文件", StandardCharsets.UTF_8);
+
+        this.mySqlConnection.failNext(1, new SQLException("模拟的故障"));
+        try {
+            this.exporter.exportNames(file, DataExporter.Format.CSV);
+            fail();
+        } catch (SQLException ignored) {
+        }
+
+        // 临时文件被删除，原来的文件保持不变
+        assertFalse(Files.exists(this.dir.resolve("names.csv.tmp")));
+        assertEquals("旧的导出文件", Files.readString(file, StandardCharsets.UTF_8));
+
+        // 之后可以正常导出
+        assertEquals(7, this.exporter.exportNames(file, DataExporter.Format.CSV));
+        assertEquals(8, parseCsv(file).size());
+    }
+}
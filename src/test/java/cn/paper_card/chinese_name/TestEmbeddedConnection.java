@@ -0,0 +1,135 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.NameInfo;
+import cn.paper_card.chinese_name.api.exception.NameRegisteredException;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class TestEmbeddedConnection {
+
+    private EmbeddedMySqlConnection mySqlConnection;
+
+    private SharedConnectionSource source;
+
+    private AsyncExecutor asyncExecutor;
+
+    private NameServiceImpl service;
+
+    @Before
+    public void setUp() throws SQLException {
+        this.mySqlConnection = new EmbeddedMySqlConnection();
+        this.source = new SharedConnectionSource(this.mySqlConnection);
+        this.asyncExecutor = new AsyncExecutor(4, 64);
+        this.service = new NameServiceImpl(this.source, new StripedLocks(16), this.asyncExecutor, new ServiceMetrics());
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        this.asyncExecutor.shutdown();
+        this.service.destroy();
+        this.source.close();
+        this.mySqlConnection.destroy();
+    }
+
+    private static @NotNull NameInfo info(@NotNull UUID uuid, @NotNull String name) {
+        return new NameInfo(uuid, name, System.currentTimeMillis(), true);
+    }
+
+    @Test
+    public void testAddAndQuery() throws SQLException, NameRegisteredException {
+        final UUID uuid = UUID.randomUUID();
+
+        assertTrue(this.service.addOrUpdateByUuid(info(uuid, "张三")));
+        assertFalse(this.service.addOrUpdateByUuid(info(uuid, "李四")));
+
+        assertEquals("李四", this.service.queryByUuid(uuid).name());
+        assertEquals(uuid, this.service.queryByName("李四").uuid());
+        assertNull(this.service.queryByName("张三"));
+
+        try {
+            this.service.addOrUpdateByUuid(info(UUID.randomUUID(), "李四"));
+            fail();
+        } catch (NameRegisteredException ignored) {
+        }
+    }
+
+    @Test
+    public void testReconnectAfterDrop() throws SQLException, NameRegisteredException {
+        final UUID uuid = UUID.randomUUID();
+        this.service.addOrUpdateByUuid(info(uuid, "王五"));
+        assertEquals(1, this.mySqlConnection.getConnectCount());
+
+        this.mySqlConnection.dropConnection();
+
+        // 第一次使用断开的连接失败
+        try {
+            this.service.queryByUuids(List.of(UUID.randomUUID()));
+            fail();
+        } catch (SQLException e) {
+            assertEquals("08S01", e.getSQLState());
+        }
+
+        // 之后换成新连接，表对象也要重新创建
+        final UUID other = UUID.randomUUID();
+        assertTrue(this.service.addOrUpdateByUuid(info(other, "赵六")));
+        assertEquals(2, this.mySqlConnection.getConnectCount());
+
+        assertEquals("王五", this.source.execute(s -> s.getNameTable().queryByUuid(uuid)).name());
+        assertEquals("赵六", this.source.execute(s -> s.getNameTable().queryByUuid(other)).name());
+    }
+
+    @Test
+    public void testFailedWriteInvalidatesCache() throws SQLException, NameRegisteredException {
+        final UUID uuid = UUID.randomUUID();
+        this.service.addOrUpdateByUuid(info(uuid, "孙七"));
+        assertEquals("孙七", this.service.queryByUuid(uuid).name());
+
+        this.mySqlConnection.failNext(1, new SQLTransientException("模拟的异常"));
+        try {
+            this.service.addOrUpdateByUuid(info(uuid, "周八"));
+            fail();
+        } catch (SQLTransientException ignored) {
+        }
+
+        // 缓存不能保留写入失败的值，也不能保留旧值
+        assertEquals("孙七", this.service.queryByUuid(uuid).name());
+        assertEquals(2, this.mySqlConnection.getConnectCount());
+    }
+
+    @Test
+    public void testSlowQueriesAreSerialized() throws Exception {
+        final int n = 4;
+        final long delay = 100;
+
+        final List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            final UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            this.service.addOrUpdateByUuid(info(uuid, "吴" + "一二三四".charAt(i)));
+        }
+        // 清空缓存，之后的查询都要访问数据库
+        this.service.destroy();
+
+        this.mySqlConnection.setQueryDelay(delay);
+
+        final long begin = System.currentTimeMillis();
+        final List<CompletableFuture<NameInfo>> futures = new ArrayList<>();
+        for (final UUID uuid : uuids) futures.add(this.service.queryByUuidAsync(uuid));
+        for (int i = 0; i < n; ++i) assertEquals(uuids.get(i), futures.get(i).get().uuid());
+        final long cost = System.currentTimeMillis() - begin;
+
+        // 共享一个连接，查询不能并行
+        assertTrue("cost: " + cost, cost >= delay * n);
+    }
+}
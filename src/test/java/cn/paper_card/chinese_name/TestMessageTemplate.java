@@ -0,0 +1,40 @@
+package cn.paper_card.chinese_name;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestMessageTemplate {
+
+    private static String plain(Component c) {
+        return PlainTextComponentSerializer.plainText().serialize(c);
+    }
+
+    @Test
+    public void testRender() {
+        final TagResolver shared = TagResolver.resolver("prefix", Tag.selfClosingInserting(Component.text("[中文名]")));
+        final MessageTemplate t = MessageTemplate.compile("<prefix> <green>管理员 <red><admin></red> 同意了 <name>，<name>~",
+                shared, "admin", "name");
+
+        assertEquals("[中文名] 管理员 张三 同意了 李四，李四~", plain(t.render("张三", "李四")));
+
+        // 参数不会被当作标签解析
+        assertEquals("[中文名] 管理员 <red>x 同意了 1，1~", plain(t.render("<red>x", 1)));
+    }
+
+    @Test
+    public void testNoSlots() {
+        final MessageTemplate t = MessageTemplate.compile("<aqua>启用", TagResolver.empty());
+        assertSame(t.render(), t.render());
+        assertEquals("启用", plain(t.render()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongArgs() {
+        MessageTemplate.compile("<name>", TagResolver.empty(), "name").render();
+    }
+}
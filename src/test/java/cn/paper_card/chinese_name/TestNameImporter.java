@@ -0,0 +1,164 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.NameInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.*;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class TestNameImporter {
+
+    private EmbeddedMySqlConnection mySqlConnection;
+
+    private SharedConnectionSource source;
+
+    private AsyncExecutor asyncExecutor;
+
+    private NameServiceImpl service;
+
+    private Connection from;
+
+    private File checkpointFile;
+
+    private File reportFile;
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        this.mySqlConnection = new EmbeddedMySqlConnection();
+        this.source = new SharedConnectionSource(this.mySqlConnection);
+        this.asyncExecutor = new AsyncExecutor(1, 16);
+        this.service = new NameServiceImpl(this.source, new StripedLocks(16), this.asyncExecutor, new ServiceMetrics());
+
+        this.source.execute(s -> {
+            s.getNameTable();
+            s.getApplicationTable();
+            return new SchemaMigrator().migrate(s.getConnection());
+        });
+
+        this.from = DriverManager.getConnection("jdbc:h2:mem:;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+        try (final Statement statement = this.from.createStatement()) {
+            statement.execute("CREATE TABLE old_name (uid1 BIGINT, uid2 BIGINT, name VARCHAR(64), time BIGINT, enable TINYINT)");
+        }
+
+        this.checkpointFile = File.createTempFile("import", ".checkpoint");
+        this.reportFile = File.createTempFile("import", ".csv");
+        Files.delete(this.checkpointFile.toPath());
+        Files.delete(this.reportFile.toPath());
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        this.from.close();
+        this.asyncExecutor.shutdown();
+        this.source.close();
+        this.mySqlConnection.destroy();
+        Files.deleteIfExists(this.checkpointFile.toPath());
+        Files.deleteIfExists(this.reportFile.toPath());
+    }
+
+    private void addSource(long uid1, long uid2, String name) throws SQLException {
+        try (final PreparedStatement ps = this.from.prepareStatement("INSERT INTO old_name VALUES (?, ?, ?, 1, 1)")) {
+            ps.setLong(1, uid1);
+            ps.setLong(2, uid2);
+            ps.setString(3, name);
+            ps.executeUpdate();
+        }
+    }
+
+    private NameImporter createImporter() {
+        final NameImporter importer = new NameImporter(this.source, this.service, this.checkpointFile, this.reportFile);
+        importer.setBatchSize(3);
+        return importer;
+    }
+
+    @Test
+    public void testImportWithConflicts() throws SQLException, IOException {
+        // 已经被其它玩家注册
+        final UUID owner = new UUID(100, 100);
+        this.source.execute(s -> s.getNameTable().insert(new NameInfo(owner, "已有", 1, true)));
+
+        // 已经有中文名，导入后更新
+        this.source.execute(s -> s.getNameTable().insert(new NameInfo(new UUID(1, 1), "旧名", 1, true)));
+        assertEquals("旧名", this.service.queryByUuid(new UUID(1, 1)).name());
+
+        this.addSource(1, 1, "甲乙");
+        this.addSource(1, 2, "丙丁");
+        this.addSource(2, 1, "甲乙");
+        this.addSource(2, 2, "已有");
+        this.addSource(3, 1, "");
+        this.addSource(3, 2, "戊己");
+        this.addSource(4, 1, "庚辛");
+
+        final NameImporter.Progress progress = this.createImporter().importFrom(this.from, "old_name", "test", null);
+
+        assertEquals(7, progress.read());
+        assertEquals(4, progress.imported());
+        assertEquals(1, progress.invalid());
+        assertEquals(2, progress.conflicts());
+
+        // 缓存中的旧值已经作废
+        assertEquals("甲乙", this.service.queryByUuid(new UUID(1, 1)).name());
+        assertEquals(new UUID(4, 1), this.service.queryByName("庚辛").uuid());
+        assertEquals(owner, this.service.queryByName("已有").uuid());
+
+        final List<String> lines = Files.readAllLines(this.reportFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(4, lines.size());
+        assertFalse(this.checkpointFile.exists());
+    }
+
+    @Test
+    public void testReportQuoting() throws SQLException, IOException {
+        final UUID owner = new UUID(100, 100);
+        this.source.execute(s -> s.getNameTable().insert(new NameInfo(owner, "甲,\"乙\"", 1, true)));
+
+        this.addSource(1, 1, "甲,\"乙\"");
+        this.addSource(2, 1, "丙\n丁");
+        this.addSource(3, 1, "戊己");
+
+        // 允许逗号和引号，不允许换行
+        final NameImporter importer = this.createImporter();
+        importer.setValidator(NameValidator.parse(List.of("4E00-9FA5", "22", "2C"), 1, 8));
+        final NameImporter.Progress progress = importer.importFrom(this.from, "old_name", "test", null);
+
+        assertEquals(1, progress.imported());
+        assertEquals(1, progress.invalid());
+        assertEquals(1, progress.conflicts());
+
+        final String nl = System.lineSeparator();
+        final String report = Files.readString(this.reportFile.toPath(), StandardCharsets.UTF_8);
+        assertTrue(report.startsWith("uuid,name,reason,owner" + nl));
+        assertTrue(report.contains(new UUID(1, 1) + ",\"甲,\"\"乙\"\"\",registered," + owner + nl));
+        assertTrue(report.contains(new UUID(2, 1) + ",\"丙\n丁\",invalid," + nl));
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws SQLException, IOException {
+        for (int i = 0; i < 10; ++i) this.addSource(i, 0, "名" + "零一二三四五六七八九".charAt(i));
+
+        // 第二批写入时中断
+        final NameImporter importer = this.createImporter();
+        final int[] batches = {0};
+        try {
+            importer.importFrom(this.from, "old_name", "test", p -> {
+                if (++batches[0] == 2) throw new IllegalStateException("中断");
+            });
+            fail();
+        } catch (IllegalStateException ignored) {
+        }
+        assertTrue(this.checkpointFile.exists());
+
+        final NameImporter.Progress progress = this.createImporter().importFrom(this.from, "old_name", "test", null);
+        assertEquals(10, progress.read());
+        assertEquals(10, progress.imported());
+        assertEquals(10, (int) this.source.execute(s -> s.getNameTable().queryCount()));
+    }
+}
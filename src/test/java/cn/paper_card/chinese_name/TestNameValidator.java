@@ -0,0 +1,168 @@
+package cn.paper_card.chinese_name;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestNameValidator {
+
+    private static void assertInvalid(List<String> ranges, int min, int max) {
+        try {
+            NameValidator.parse(ranges, min, max);
+            fail("应该抛出异常：%s %d~%d".formatted(ranges, min, max));
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testDefault() {
+        final NameValidator v = NameValidator.parse(NameValidator.DEFAULT_RANGES, 2, 4);
+        for (final String name : new String[]{"张三", "李四五", "欧阳小明", "abc", "张", "欧阳小明明", "张3", ""}) {
+            assertEquals(name, NameValidator.DEFAULT.isValid(name), v.isValid(name));
+        }
+        assertTrue(v.isValid("张三"));
+        assertFalse(v.isValid("张"));
+        assertFalse(v.isValid("欧阳小明明"));
+        assertFalse(v.isValid("张3"));
+    }
+
+    @Test
+    public void testSupplementary() {
+        // 扩展B区的汉字是代理对，算一个字
+        final String ext = new String(Character.toChars(0x20000));
+        final String ext2 = new String(Character.toChars(0x2A6D6));
+        assertEquals(2, ext.length());
+
+        final NameValidator v = NameValidator.parse(List.of("4E00-9FA5", "20000-2A6DF"), 2, 4);
+        assertTrue(v.isValid(ext + ext2));
+        assertTrue(v.isValid("张" + ext));
+        assertTrue(v.isValid(ext + ext2 + ext + ext2));
+        assertFalse(v.isValid(ext));
+        assertFalse(v.isValid(ext + ext2 + ext + ext2 + ext));
+
+        // 没有配置扩展区时不允许
+        assertFalse(NameValidator.DEFAULT.isValid("张" + ext));
+
+        // 单独的代理字符不在任何区间内
+        assertFalse(v.isValid("张\uD840"));
+        assertFalse(v.isValid("\uDC00张"));
+    }
+
+    @Test
+    public void testMergedRanges() {
+        // 乱序、重叠、相邻和包含的区间
+        final NameValidator v = NameValidator.parse(List.of(" 61-63 ", "62-66", "67-68", "41-5a", "50-52", "3007"), 1, 8);
+
+        for (int cp = 'a'; cp <= 'h'; ++cp) assertTrue(Character.toString(cp), v.isAllowed(cp));
+        for (int cp = 'A'; cp <= 'Z'; ++cp) assertTrue(Character.toString(cp), v.isAllowed(cp));
+        assertTrue(v.isAllowed(0x3007));
+
+        assertFalse(v.isAllowed('i'));
+        assertFalse(v.isAllowed('`'));
+        assertFalse(v.isAllowed('@'));
+        assertFalse(v.isAllowed('['));
+        assertFalse(v.isAllowed(0x3006));
+        assertFalse(v.isAllowed(0x3008));
+        assertFalse(v.isAllowed(0));
+        assertFalse(v.isAllowed(Character.MAX_CODE_POINT));
+    }
+
+    @Test
+    public void testParseRanges() {
+        // 相邻的区间合并后中间没有空隙
+        final NameValidator adjacent = NameValidator.parse(List.of("100-1FF", "200-2FF", "300"), 1, 4);
+        for (int cp = 0x100; cp <= 0x300; ++cp) assertTrue(adjacent.isAllowed(cp));
+        assertFalse(adjacent.isAllowed(0xFF));
+        assertFalse(adjacent.isAllowed(0x301));
+
+        // 相差一个码点的区间不合并
+        final NameValidator gap = NameValidator.parse(List.of("100-1FF", "201-2FF"), 1, 4);
+        assertTrue(gap.isAllowed(0x1FF));
+        assertFalse(gap.isAllowed(0x200));
+        assertTrue(gap.isAllowed(0x201));
+
+        // 重叠和包含
+        final NameValidator overlap = NameValidator.parse(List.of("100-300", "150-200", "250-400"), 1, 4);
+        assertTrue(overlap.isAllowed(0x100));
+        assertTrue(overlap.isAllowed(0x350));
+        assertTrue(overlap.isAllowed(0x400));
+        assertFalse(overlap.isAllowed(0x401));
+
+        // 单个码点，重复的单个码点
+        final NameValidator single = NameValidator.parse(List.of("3007", "3007", "4E00"), 1, 4);
+        assertTrue(single.isAllowed(0x3007));
+        assertTrue(single.isAllowed(0x4E00));
+        assertFalse(single.isAllowed(0x3008));
+        assertFalse(single.isAllowed(0x4DFF));
+        assertFalse(single.isAllowed(0x4E01));
+
+        // 单个区间可以到最大码点
+        final NameValidator max = NameValidator.parse(List.of("10FFFF"), 1, 4);
+        assertTrue(max.isAllowed(Character.MAX_CODE_POINT));
+        assertFalse(max.isAllowed(Character.MAX_CODE_POINT - 1));
+
+        assertInvalid(List.of(""), 1, 4);
+        assertInvalid(List.of("-"), 1, 4);
+        assertInvalid(List.of("4E00-9FA5-9FFF"), 1, 4);
+        assertInvalid(List.of("110000"), 1, 4);
+        assertInvalid(List.of("FFFFFFFFF"), 1, 4);
+        assertInvalid(List.of("-100"), 1, 4);
+    }
+
+    @Test
+    public void testLengthFastPath() {
+        final String ext = new String(Character.toChars(0x20000));
+        final NameValidator v = NameValidator.parse(List.of("4E00-9FA5", "20000-2A6DF"), 1, 2);
+
+        // 两个扩展区汉字是4个char，刚好等于 maxLength * 2，不能被提前排除
+        assertTrue(v.isValid(ext + ext));
+        assertTrue(v.isValid(ext + "张"));
+
+        // 超过 maxLength * 2 个char直接排除
+        assertFalse(v.isValid(ext + ext + "张"));
+        assertFalse(v.isValid(ext + ext + ext));
+
+        // 没有超过 maxLength * 2，但是字数超过
+        assertFalse(v.isValid("张三李"));
+        assertFalse(v.isValid("张三李四"));
+        assertFalse(v.isValid("张" + ext + "三"));
+    }
+
+    @Test
+    public void testLength() {
+        final NameValidator v = NameValidator.parse(NameValidator.DEFAULT_RANGES, 1, 1);
+        assertEquals(1, v.getMinLength());
+        assertEquals(1, v.getMaxLength());
+        assertTrue(v.isValid("张"));
+        assertFalse(v.isValid(""));
+        assertFalse(v.isValid("张三"));
+
+        final NameValidator v2 = NameValidator.parse(NameValidator.DEFAULT_RANGES, 3, 6);
+        assertFalse(v2.isValid("张三"));
+        assertTrue(v2.isValid("张三三"));
+        assertTrue(v2.isValid("张三三三三三"));
+        assertFalse(v2.isValid("张三三三三三三"));
+    }
+
+    @Test
+    public void testMalformedConfig() {
+        assertInvalid(NameValidator.DEFAULT_RANGES, 0, 4);
+        assertInvalid(NameValidator.DEFAULT_RANGES, 4, 2);
+        assertInvalid(List.of(), 2, 4);
+        assertInvalid(List.of("4E00-9FA5", "汉字"), 2, 4);
+        assertInvalid(List.of("9FA5-4E00"), 2, 4);
+        assertInvalid(List.of("4E00-"), 2, 4);
+        assertInvalid(List.of("0-110000"), 2, 4);
+
+        // 配置不正确时保持原来的规则
+        NameValidator v = NameValidator.DEFAULT;
+        try {
+            v = NameValidator.parse(List.of("zzzz"), 2, 4);
+        } catch (IllegalArgumentException ignored) {
+        }
+        assertSame(NameValidator.DEFAULT, v);
+        assertTrue(v.isValid("张三"));
+    }
+}
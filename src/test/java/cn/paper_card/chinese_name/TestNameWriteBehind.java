@@ -0,0 +1,102 @@
+package cn.paper_card.chinese_name;
+
+import cn.paper_card.chinese_name.api.NameInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class TestNameWriteBehind {
+
+    private EmbeddedMySqlConnection mySqlConnection;
+
+    private SharedConnectionSource source;
+
+    private AsyncExecutor asyncExecutor;
+
+    private NameServiceImpl service;
+
+    @Before
+    public void setUp() throws SQLException {
+        this.mySqlConnection = new EmbeddedMySqlConnection();
+        this.source = new SharedConnectionSource(this.mySqlConnection);
+        this.asyncExecutor = new AsyncExecutor(1, 16);
+        this.service = new NameServiceImpl(this.source, new StripedLocks(16), this.asyncExecutor, new ServiceMetrics());
+
+        this.source.execute(s -> {
+            s.getNameTable();
+            s.getApplicationTable();
+            return new SchemaMigrator().migrate(s.getConnection());
+        });
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        this.asyncExecutor.shutdown();
+        this.source.close();
+        this.mySqlConnection.destroy();
+    }
+
+    private NameInfo queryDb(UUID uuid) throws SQLException {
+        return this.source.execute(s -> s.getNameTable().queryByUuid(uuid));
+    }
+
+    @Test
+    public void testCoalesceAndFlush() throws Exception {
+        final UUID uuid = UUID.randomUUID();
+        this.service.addOrUpdateByUuid(new NameInfo(uuid, "张三", 1, true));
+
+        assertTrue(this.service.toggleEnable(uuid, false));
+        assertFalse(this.service.toggleEnable(uuid, false));
+        assertTrue(this.service.toggleEnable(uuid, true));
+        assertTrue(this.service.toggleEnable(uuid, false));
+
+        // 还没有写入数据库，查询结果已经改变
+        assertTrue(queryDb(uuid).enable());
+        assertFalse(this.service.queryByUuid(uuid).enable());
+        assertFalse(this.service.queryByName("张三").enable());
+
+        // 同一个UUID只写入一次
+        assertEquals(1, this.service.flushPending());
+        assertFalse(queryDb(uuid).enable());
+        assertEquals(0, this.service.flushPending());
+
+        assertFalse(this.service.toggleEnable(UUID.randomUUID(), true));
+    }
+
+    @Test
+    public void testNewerWriteWins() throws Exception {
+        final UUID uuid = UUID.randomUUID();
+        this.service.addOrUpdateByUuid(new NameInfo(uuid, "李四", 1, true));
+        assertTrue(this.service.toggleEnable(uuid, false));
+
+        // 直接写入的更新比延迟的启用、禁用新
+        this.service.addOrUpdateByUuid(new NameInfo(uuid, "王五", System.currentTimeMillis() + 1000, true));
+        this.service.flushPending();
+
+        final NameInfo info = queryDb(uuid);
+        assertEquals("王五", info.name());
+        assertTrue(info.enable());
+    }
+
+    @Test
+    public void testFlushFailureKeepsPending() throws Exception {
+        final UUID uuid = UUID.randomUUID();
+        this.service.addOrUpdateByUuid(new NameInfo(uuid, "赵六", 1, true));
+        assertTrue(this.service.toggleEnable(uuid, false));
+
+        this.mySqlConnection.failNext(1, new SQLException("模拟的故障"));
+        try {
+            this.service.flushPending();
+            fail();
+        } catch (SQLException ignored) {
+        }
+
+        assertEquals(1, this.service.flushPending());
+        assertFalse(queryDb(uuid).enable());
+    }
+}